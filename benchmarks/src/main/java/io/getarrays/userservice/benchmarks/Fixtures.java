@@ -0,0 +1,72 @@
+package io.getarrays.userservice.benchmarks;
+
+import io.getarrays.userservice.UserserviceApplication;
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+final class Fixtures {
+    static final String[] ROLE_NAMES = {"ROLE_USER", "ROLE_MANAGER", "ROLE_ADMIN", "ROLE_SUPER_ADMIN"};
+
+    private Fixtures() {
+    }
+
+    static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<Role> roles = new ArrayList<>();
+            roles.add(new Role(null, ROLE_NAMES[0]));
+            if (i % 10 == 0) {
+                roles.add(new Role(null, ROLE_NAMES[2]));
+            }
+            users.add(new User(null, "Bench User " + i, "bench" + i, "1234", roles));
+        }
+        return users;
+    }
+
+    // userservice on a private in-memory H2 database, no web server and no SQL echo;
+    // extraArgs ("--key=value") override these defaults
+    static ConfigurableApplicationContext startUserservice(String... extraArgs) {
+        return start(WebApplicationType.NONE, new LinkedHashMap<>(), extraArgs);
+    }
+
+    // same, but with Tomcat on a random port (local.server.port) and basic auth as bench/bench
+    static ConfigurableApplicationContext startWebUserservice(String... extraArgs) {
+        Map<String, String> args = new LinkedHashMap<>();
+        args.put("server.port", "0");
+        args.put("spring.security.user.name", "bench");
+        args.put("spring.security.user.password", "bench");
+        // the load harness drives everything from one address, which the per-client limits would throttle
+        args.put("userservice.ratelimit.enabled", "false");
+        return start(WebApplicationType.SERVLET, args, extraArgs);
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType type, Map<String, String> args,
+                                                        String... extraArgs) {
+        SpringApplication app = new SpringApplication(UserserviceApplication.class);
+        app.setWebApplicationType(type);
+        args.put("spring.datasource.url", "jdbc:h2:mem:bench-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER");
+        args.put("spring.datasource.username", "sa");
+        args.put("spring.datasource.password", "");
+        args.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        args.put("spring.jpa.show-sql", "false");
+        args.put("spring.jpa.properties.hibernate.format_sql", "false");
+        args.put("logging.level.root", "WARN");
+        // roles must exist before the benchmarks import their users
+        args.put("userservice.seed.async", "false");
+        for (String arg : extraArgs) {
+            int separator = arg.indexOf('=');
+            args.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return app.run(args.entrySet().stream()
+                .map(arg -> "--" + arg.getKey() + "=" + arg.getValue())
+                .toArray(String[]::new));
+    }
+}
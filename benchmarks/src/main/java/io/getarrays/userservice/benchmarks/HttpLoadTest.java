@@ -0,0 +1,177 @@
+package io.getarrays.userservice.benchmarks;
+
+import io.getarrays.userservice.service.UserCursor;
+import io.getarrays.userservice.service.UserService;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop HTTP load test comparing userservice.execution.mode values end to end (Tomcat, Spring MVC, JDBC).
+ * Each mode gets a fresh userservice on a random port; {@code concurrency} client threads then fetch
+ * GET /api/users/page at random cursors for {@code warmup} + {@code duration} seconds, and throughput and
+ * latency percentiles of the measured part are printed per mode.
+ * <p>
+ * Run: java -cp target/benchmarks.jar io.getarrays.userservice.benchmarks.HttpLoadTest
+ * [--modes=platform,virtual] [--concurrency=400] [--warmup=10] [--duration=30] [--users=10000]
+ * [--spring.property=value ...]. Other "--key=value" arguments go to userservice, e.g. a MySQL
+ * spring.datasource.url or server.tomcat.threads.max. virtual is only in the default modes on JDK 21+.
+ */
+public class HttpLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("modes", Runtime.version().feature() >= 21 ? "platform,virtual" : "platform");
+        options.put("concurrency", "400");
+        options.put("warmup", "10");
+        options.put("duration", "30");
+        options.put("users", "10000");
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            String key = arg.substring(2, arg.indexOf('='));
+            if (options.containsKey(key)) {
+                options.put(key, arg.substring(arg.indexOf('=') + 1));
+            } else {
+                springArgs.add(arg);
+            }
+        }
+
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration")));
+        System.out.printf("%-10s %10s %8s %10s %10s %10s %10s%n",
+                "mode", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+        for (String mode : options.get("modes").split(",")) {
+            List<String> modeArgs = new ArrayList<>(springArgs);
+            modeArgs.add("--userservice.execution.mode=" + mode);
+            Result result = run(modeArgs.toArray(String[]::new),
+                    Integer.parseInt(options.get("concurrency")),
+                    Duration.ofSeconds(Long.parseLong(options.get("warmup"))),
+                    duration,
+                    Integer.parseInt(options.get("users")));
+            System.out.printf("%-10s %10d %8d %10.0f %10.2f %10.2f %10.2f%n", mode, result.requests, result.errors,
+                    result.requests / (double) duration.toSeconds(),
+                    result.percentileMillis(0.50), result.percentileMillis(0.99), result.percentileMillis(1.0));
+        }
+    }
+
+    private static Result run(String[] springArgs, int concurrency, Duration warmup, Duration duration, int users)
+            throws InterruptedException {
+        try (ConfigurableApplicationContext context = Fixtures.startWebUserservice(springArgs)) {
+            context.getBean(UserService.class).importUsers(Fixtures.users(users));
+            URI base = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+            String authorization = "Basic " + Base64.getEncoder()
+                    .encodeToString("bench:bench".getBytes(StandardCharsets.UTF_8));
+            // log in once and share the session: the default in-memory user is upgraded to bcrypt after the
+            // first login, which would otherwise dominate every request
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .cookieHandler(new CookieManager())
+                    .build();
+            try {
+                http.send(HttpRequest.newBuilder(base.resolve("/api/users/page?size=1"))
+                        .header("Authorization", authorization).build(), HttpResponse.BodyHandlers.discarding());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            long measureFrom = System.nanoTime() + warmup.toNanos();
+            long stopAt = measureFrom + duration.toNanos();
+            Samples[] samples = new Samples[concurrency];
+            CountDownLatch done = new CountDownLatch(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                Samples own = samples[i] = new Samples();
+                Thread client = new Thread(() -> {
+                    try {
+                        for (long start = System.nanoTime(); start < stopAt; start = System.nanoTime()) {
+                            String cursor = UserCursor.encode((long) ThreadLocalRandom.current().nextInt(users));
+                            HttpRequest request = HttpRequest.newBuilder(base.resolve("/api/users/page?size=50&cursor=" + cursor))
+                                    .header("Authorization", authorization)
+                                    .GET()
+                                    .build();
+                            boolean ok;
+                            try {
+                                ok = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+                            } catch (Exception e) {
+                                ok = false;
+                            }
+                            if (start >= measureFrom) {
+                                own.add(System.nanoTime() - start, ok);
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }, "load-client-" + i);
+                client.setDaemon(true);
+                client.start();
+            }
+            done.await();
+            return Result.merge(samples);
+        }
+    }
+
+    // per-client latencies, merged once the run is over so the hot loop shares nothing
+    private static final class Samples {
+        private long[] nanos = new long[1024];
+        private int size;
+        private long errors;
+
+        void add(long latencyNanos, boolean ok) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latencyNanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+    }
+
+    private static final class Result {
+        private final long[] sortedNanos;
+        private final long requests;
+        private final long errors;
+
+        private Result(long[] sortedNanos, long errors) {
+            this.sortedNanos = sortedNanos;
+            this.requests = sortedNanos.length;
+            this.errors = errors;
+        }
+
+        static Result merge(Samples[] samples) {
+            long[] all = new long[Arrays.stream(samples).mapToInt(s -> s.size).sum()];
+            int offset = 0;
+            long errors = 0;
+            for (Samples s : samples) {
+                System.arraycopy(s.nanos, 0, all, offset, s.size);
+                offset += s.size;
+                errors += s.errors;
+            }
+            Arrays.sort(all);
+            return new Result(all, errors);
+        }
+
+        double percentileMillis(double percentile) {
+            if (sortedNanos.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+            return sortedNanos[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.getarrays.userservice.benchmarks;
+
+import io.getarrays.userservice.domain.User;
+import io.getarrays.userservice.service.UserPage;
+import io.getarrays.userservice.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-path throughput with today's logging defaults (INFO per call, show-sql + format_sql on a
+ * synchronous console) against the prod profile (async JSON, sampled read logs, slow-query-only SQL).
+ * Console output goes to a temp file so the runner's terminal is not part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LoggingBenchmark {
+    @Param({"default", "prod"})
+    String logging;
+
+    private PrintStream originalOut;
+    private Path console;
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        originalOut = System.out;
+        console = Files.createTempFile("userservice-console", ".log");
+        System.setOut(new PrintStream(new FileOutputStream(console.toFile()), true));
+        if ("prod".equals(logging)) {
+            context = Fixtures.startUserservice("--spring.profiles.active=prod", "--logging.level.root=INFO");
+        } else {
+            context = Fixtures.startUserservice("--spring.jpa.show-sql=true",
+                    "--spring.jpa.properties.hibernate.format_sql=true", "--logging.level.root=INFO");
+        }
+        userService = context.getBean(UserService.class);
+        userService.importUsers(Fixtures.users(1000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        System.out.close();
+        System.setOut(originalOut);
+        Files.deleteIfExists(console);
+    }
+
+    @Benchmark
+    public User getUser() {
+        return userService.getUser("bench" + ThreadLocalRandom.current().nextInt(1000));
+    }
+
+    @Benchmark
+    public UserPage getUsersPage() {
+        return userService.getUsers(null, 20);
+    }
+}
@@ -0,0 +1,36 @@
+package io.getarrays.userservice.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time until the context is refreshed, with the default setup against the fast profile (lazy beans,
+ * deferred repositories, seeding off the startup path). A fresh JVM per fork keeps class loading in the number.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+    @Param({"default", "fast"})
+    String profile;
+
+    private ConfigurableApplicationContext context;
+
+    @Benchmark
+    public ConfigurableApplicationContext start() {
+        context = "fast".equals(profile)
+                ? Fixtures.startUserservice("--spring.profiles.active=fast", "--userservice.seed.async=true")
+                : Fixtures.startUserservice();
+        return context;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        context.close();
+    }
+}
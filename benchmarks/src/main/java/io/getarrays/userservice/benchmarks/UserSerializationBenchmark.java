@@ -0,0 +1,59 @@
+package io.getarrays.userservice.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+import io.getarrays.userservice.service.UserView;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a GET /api/users payload into bytes with the same ObjectMapper setup Spring MVC uses:
+ * entities as they used to be returned, and the UserView projection through the resource's typed writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSerializationBenchmark {
+    @Param({"10", "1000", "10000"})
+    int size;
+
+    private ObjectMapper objectMapper;
+    private List<User> users;
+    private ObjectWriter viewListWriter;
+    private List<UserView> views;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        users = Fixtures.users(size);
+        long id = 1;
+        for (User user : users) {
+            user.setId(id++);
+        }
+        viewListWriter = objectMapper.writerFor(new TypeReference<List<UserView>>() {});
+        views = users.stream()
+                .map(user -> new UserView(user.getId(), user.getName(), user.getUsername(),
+                        user.getRoles().stream().map(Role::getName).collect(Collectors.toList())))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public byte[] writeUserList() throws Exception {
+        return objectMapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] writeUserViewList() throws Exception {
+        return viewListWriter.writeValueAsBytes(views);
+    }
+}
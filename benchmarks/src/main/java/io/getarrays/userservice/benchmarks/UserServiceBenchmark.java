@@ -0,0 +1,80 @@
+package io.getarrays.userservice.benchmarks;
+
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+import io.getarrays.userservice.service.RoleRegistry;
+import io.getarrays.userservice.service.UserPage;
+import io.getarrays.userservice.service.UserService;
+import io.getarrays.userservice.service.UserView;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserServiceImpl read paths against an embedded H2 database seeded with {@code users} rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+    @Param({"1000"})
+    int users;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private RoleRegistry roleRegistry;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = Fixtures.startUserservice();
+        userService = context.getBean(UserService.class);
+        roleRegistry = context.getBean(RoleRegistry.class);
+        userService.importUsers(Fixtures.users(users));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public User getUser() {
+        return userService.getUser("bench" + ThreadLocalRandom.current().nextInt(users));
+    }
+
+    @Benchmark
+    public UserView getUserView() {
+        return userService.getUserView("bench" + ThreadLocalRandom.current().nextInt(users));
+    }
+
+    @Benchmark
+    public List<UserView> getUsers() {
+        return userService.getUsers();
+    }
+
+    @Benchmark
+    public UserPage getUsersFirstPage() {
+        return userService.getUsers(null, 50);
+    }
+
+    @Benchmark
+    public List<UserView> searchUsersByPrefix() {
+        return userService.searchUsers("bench" + ThreadLocalRandom.current().nextInt(100), null, null, 20);
+    }
+
+    @Benchmark
+    public List<UserView> searchUsersBySubstring() {
+        return userService.searchUsers(null, "ser " + ThreadLocalRandom.current().nextInt(100), "ROLE_USER", 20);
+    }
+
+    @Benchmark
+    public Role roleRegistryLookup() {
+        return roleRegistry.findByName(Fixtures.ROLE_NAMES[ThreadLocalRandom.current().nextInt(Fixtures.ROLE_NAMES.length)]);
+    }
+}
@@ -0,0 +1,124 @@
+package skkuchin.service.mail;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+@Component
+public class InMemoryVerificationCodeStore implements VerificationCodeStore {
+    @Value("${mail.code.ttl-seconds:600}")
+    long ttlSeconds = 600;
+    @Value("${mail.code.max-entries:100000}")
+    int maxEntries = 100000;
+    @Value("${mail.code.max-attempts:5}")
+    int maxAttempts = 5;
+    @Value("${mail.code.resend-interval-seconds:60}")
+    long resendIntervalSeconds = 60;
+    @Value("${mail.code.sweep-interval-seconds:60}")
+    long sweepIntervalSeconds = 60;
+
+    //테스트에서 시간을 앞당길 수 있도록 분리
+    LongSupplier clock = System::currentTimeMillis;
+
+    private final ConcurrentHashMap<String, Entry> codes = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    //만료된 코드는 백그라운드에서 정리
+    @PostConstruct
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "verification-code-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    @Override
+    public String issue(String email) {
+        long now = clock.getAsLong();
+        if (!codes.containsKey(email) && codes.size() >= maxEntries) {
+            sweep();
+            if (codes.size() >= maxEntries) {
+                throw new IllegalStateException("verification_code_store_full");
+            }
+        }
+        Entry issued = codes.compute(email, (key, current) -> {
+            if (current != null && current.expiresAt > now
+                    && now - current.issuedAt < TimeUnit.SECONDS.toMillis(resendIntervalSeconds)) {
+                throw new IllegalStateException("verification_code_rate_limited");
+            }
+            return new Entry(VerificationCodeGenerator.next(), now, now + TimeUnit.SECONDS.toMillis(ttlSeconds));
+        });
+        return issued.code;
+    }
+
+    @Override
+    public boolean verify(String email, String code) {
+        Entry entry = codes.get(email);
+        if (entry == null || code == null) {
+            return false;
+        }
+        if (entry.expiresAt <= clock.getAsLong() || entry.attempts.incrementAndGet() > maxAttempts) {
+            codes.remove(email, entry);
+            return false;
+        }
+        if (constantTimeEquals(entry.code, code)) {
+            codes.remove(email, entry);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void revoke(String email, String code) {
+        codes.computeIfPresent(email, (key, current) -> current.code.equals(code) ? null : current);
+    }
+
+    public int size() {
+        return codes.size();
+    }
+
+    void sweep() {
+        long now = clock.getAsLong();
+        codes.values().removeIf(entry -> entry.expiresAt <= now);
+    }
+
+    //비교 시간이 일치하는 글자 수에 따라 달라지지 않도록 끝까지 비교
+    private static boolean constantTimeEquals(String expected, String actual) {
+        if (expected.length() != actual.length()) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < expected.length(); i++) {
+            diff |= expected.charAt(i) ^ actual.charAt(i);
+        }
+        return diff == 0;
+    }
+
+    private static class Entry {
+        private final String code;
+        private final long issuedAt;
+        private final long expiresAt;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        Entry(String code, long issuedAt, long expiresAt) {
+            this.code = code;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package skkuchin.service.mail;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+//@AllArgsConstructor
+public class MailService {
+    /*
+    private JavaMailSender mailSender;
+    private static final String FROM_ADDRESS = "syejin9755@gmail.com";
+
+    public void mailSend(MailDto mailDto) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(mailDto.getAddress());
+        message.setFrom(MailService.FROM_ADDRESS);
+        message.setSubject(mailDto.getTitle());
+        message.setText(mailDto.getMessage());
+
+        mailSender.send(message);
+    }*/
+
+    @Autowired
+    JavaMailSenderImpl emailSender;
+    @Autowired
+    VerificationCodeStore codeStore;
+
+    @Value("${mail.dispatch.workers:2}")
+    int workerCount = 2;
+    @Value("${mail.dispatch.queue-capacity:10000}")
+    int queueCapacity = 10000;
+    @Value("${mail.dispatch.batch-size:20}")
+    int batchSize = 20;
+    @Value("${mail.dispatch.max-attempts:5}")
+    int maxAttempts = 5;
+    @Value("${mail.dispatch.backoff-ms:500}")
+    long backoffMillis = 500;
+
+    private BlockingQueue<OutboundMail> queue;
+    private ExecutorService workers;
+    private ScheduledExecutorService retries;
+    //재시도를 기다리는 메일, 종료할 때 실패 처리하기 위해 보관
+    private final Set<OutboundMail> delayed = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+
+    //발송 큐와 워커 시작
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        retries = Executors.newSingleThreadScheduledExecutor();
+        workers = Executors.newFixedThreadPool(workerCount);
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::drain);
+        }
+    }
+
+    //진행 중인 묶음은 마저 보내고, 큐와 재시도 대기에 남은 메일은 기다리는 쪽이 멈추지 않도록 실패 처리
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        retries.shutdownNow();
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+        List<OutboundMail> pending = new ArrayList<>(delayed);
+        delayed.clear();
+        queue.drainTo(pending);
+        if (!pending.isEmpty()) {
+            log.warn("Mail service stopped with {} mails not sent", pending.size());
+        }
+        pending.forEach(mail -> mail.delivery.completeExceptionally(new RejectedExecutionException("mail service stopped")));
+    }
+
+    //랜덤 인증 코드 생성
+    public String createCode() {
+        return VerificationCodeGenerator.next();
+    }
+
+    //메일 양식 작성
+    public MimeMessage createEmailForm(String email, String authNum) throws MessagingException, UnsupportedEncodingException {
+        String setFrom = "syejin9755@gmail.com";
+        String toEmail = email; //받는 사람
+        String title = "SKKUCHIN 이메일 인증";
+        String mailContent = "<h1>[이메일 인증]</h1><br><p>아래 링크를 클릭하시면 이메일 인증이 완료됩니다.</p>"
+                + "<a href='http://localhost:8080/member/signUpConfirm?email="
+                + email + "&authNum=" + authNum + "' target='_blenk'>이메일 인증 확인</a>";
+
+        MimeMessage message = emailSender.createMimeMessage();
+        message.addRecipients(MimeMessage.RecipientType.TO, email); //보낼 이메일 설정
+        message.setSubject(title); //제목 설정
+        message.setFrom(setFrom);
+        message.setText(mailContent, "utf-8", "html");
+
+        return message;
+    }
+
+    //코드를 저장소에 발급받고 메일을 큐에 넣은 뒤 바로 반환, 실제 전송은 워커가 처리
+    //큐에 넣지 못하면 발급을 취소해 재발급 간격에 막히지 않고 다시 요청할 수 있게 함
+    public MailHandle send(String toEmail) {
+        OutboundMail mail = new OutboundMail(toEmail, codeStore.issue(toEmail));
+        if (!running || !queue.offer(mail)) {
+            codeStore.revoke(toEmail, mail.authNum);
+            mail.delivery.completeExceptionally(new RejectedExecutionException(running ? "mail queue is full" : "mail service stopped"));
+        }
+        return new MailHandle(mail.authNum, mail.delivery);
+    }
+
+    public String sendEmail(String toEmail) throws MessagingException, UnsupportedEncodingException {
+        return send(toEmail).getAuthNum();
+    }
+
+    ///member/signUpConfirm 링크의 코드 확인
+    public boolean confirmCode(String email, String authNum) {
+        return codeStore.verify(email, authNum);
+    }
+
+    //큐에서 묶음으로 꺼내 한 번의 SMTP 연결로 전송
+    private void drain() {
+        List<OutboundMail> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                OutboundMail first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                deliver(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Mail worker failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void deliver(List<OutboundMail> batch) {
+        List<OutboundMail> ready = new ArrayList<>(batch.size());
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (OutboundMail mail : batch) {
+            try {
+                mail.message = createEmailForm(mail.toEmail, mail.authNum);
+                ready.add(mail);
+                messages.add(mail.message);
+            } catch (MessagingException | UnsupportedEncodingException e) {
+                mail.delivery.completeExceptionally(e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            //JavaMailSenderImpl은 한 번의 send 호출 안에서 Transport 연결을 재사용함
+            emailSender.send(messages.toArray(new MimeMessage[0]));
+            ready.forEach(mail -> mail.delivery.complete(null));
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            for (OutboundMail mail : ready) {
+                if (failed.isEmpty() || failed.containsKey(mail.message)) {
+                    retry(mail, e);
+                } else {
+                    mail.delivery.complete(null);
+                }
+            }
+        } catch (MailException e) {
+            ready.forEach(mail -> retry(mail, e));
+        }
+    }
+
+    //지수 백오프로 재시도, 최대 횟수를 넘기면 실패 처리
+    private void retry(OutboundMail mail, Exception cause) {
+        mail.attempts++;
+        if (mail.attempts >= maxAttempts || !running) {
+            log.warn("Giving up on mail to {} after {} attempts", mail.toEmail, mail.attempts);
+            mail.delivery.completeExceptionally(cause);
+            return;
+        }
+        long delay = backoffMillis << (mail.attempts - 1);
+        delayed.add(mail);
+        retries.schedule(() -> {
+            if (delayed.remove(mail) && !queue.offer(mail)) {
+                mail.delivery.completeExceptionally(new RejectedExecutionException("mail queue is full"));
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Getter @AllArgsConstructor
+    public static class MailHandle {
+        private final String authNum;
+        private final CompletableFuture<Void> delivery;
+    }
+
+    private static class OutboundMail {
+        private final String toEmail;
+        private final String authNum;
+        private final CompletableFuture<Void> delivery = new CompletableFuture<>();
+        private MimeMessage message;
+        private int attempts;
+
+        OutboundMail(String toEmail, String authNum) {
+            this.toEmail = toEmail;
+            this.authNum = authNum;
+        }
+    }
+}
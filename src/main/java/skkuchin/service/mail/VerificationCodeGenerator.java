@@ -0,0 +1,24 @@
+package skkuchin.service.mail;
+
+import java.security.SecureRandom;
+
+//공유 SecureRandom 하나로 인증 코드 생성, 난수 long 하나에서 5비트씩 잘라 문자로 변환
+public final class VerificationCodeGenerator {
+    public static final int LENGTH = 8;
+    //헷갈리는 0/O, 1/I 제외한 32자
+    private static final char[] ALPHABET = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789".toCharArray();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private VerificationCodeGenerator() {
+    }
+
+    public static String next() {
+        long bits = RANDOM.nextLong();
+        char[] code = new char[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            code[i] = ALPHABET[(int) (bits & 31)];
+            bits >>>= 5;
+        }
+        return new String(code);
+    }
+}
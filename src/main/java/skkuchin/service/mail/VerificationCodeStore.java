@@ -0,0 +1,13 @@
+package skkuchin.service.mail;
+
+//이메일별 인증 코드 저장소, 기본은 메모리 구현이고 DB 테이블 구현으로 교체 가능
+public interface VerificationCodeStore {
+    //새 코드 발급, 너무 자주 요청하거나 저장소가 가득 차면 IllegalStateException
+    String issue(String email);
+
+    //코드가 맞으면 true, 맞거나 시도 횟수를 넘기면 코드는 삭제됨
+    boolean verify(String email, String code);
+
+    //발급한 코드를 보내지 못했을 때 취소, 재발급 간격 제한 없이 다시 요청할 수 있음
+    void revoke(String email, String code);
+}
@@ -0,0 +1,129 @@
+package skkuchin.service.mail;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InMemoryVerificationCodeStoreTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private InMemoryVerificationCodeStore store;
+
+    @BeforeEach
+    public void setup() {
+        store = new InMemoryVerificationCodeStore();
+        store.clock = now::get;
+        store.ttlSeconds = 600;
+        store.maxAttempts = 3;
+        store.resendIntervalSeconds = 60;
+    }
+
+    @Test
+    @DisplayName("발급한 코드는 한 번만 확인됨")
+    void 코드_확인() {
+        String code = store.issue("user@skku.edu");
+
+        assertThat(code).hasSize(VerificationCodeGenerator.LENGTH).matches("[A-HJ-NP-Z2-9]+");
+        assertThat(store.verify("other@skku.edu", code)).isFalse();
+        assertThat(store.verify("user@skku.edu", code)).isTrue();
+        assertThat(store.verify("user@skku.edu", code)).isFalse();
+    }
+
+    @Test
+    @DisplayName("TTL이 지난 코드는 맞아도 거부됨")
+    void 코드_만료() {
+        String code = store.issue("user@skku.edu");
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(600));
+
+        assertThat(store.verify("user@skku.edu", code)).isFalse();
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("시도 횟수를 넘기면 맞는 코드도 거부됨")
+    void 시도_횟수_제한() {
+        String code = store.issue("user@skku.edu");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(store.verify("user@skku.edu", "WRONG" + i)).isFalse();
+        }
+
+        assertThat(store.verify("user@skku.edu", code)).isFalse();
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("재발송 간격 안에 다시 요청하면 거부되고, 간격이 지나면 새 코드가 발급됨")
+    void 재발송_간격() {
+        String first = store.issue("user@skku.edu");
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(59));
+        assertThatThrownBy(() -> store.issue("user@skku.edu"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("verification_code_rate_limited");
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(1));
+        String second = store.issue("user@skku.edu");
+
+        assertThat(store.verify("user@skku.edu", first)).isFalse();
+        assertThat(store.verify("user@skku.edu", second)).isTrue();
+    }
+
+    @Test
+    @DisplayName("취소한 코드는 확인되지 않고 재발송 간격 없이 다시 발급됨")
+    void 발급_취소() {
+        String first = store.issue("user@skku.edu");
+
+        store.revoke("user@skku.edu", "OTHER");
+        assertThat(store.size()).isEqualTo(1);
+
+        store.revoke("user@skku.edu", first);
+        assertThat(store.verify("user@skku.edu", first)).isFalse();
+        String second = store.issue("user@skku.edu");
+        assertThat(store.verify("user@skku.edu", second)).isTrue();
+    }
+
+    @Test
+    @DisplayName("저장소가 가득 차면 만료된 코드를 정리한 뒤에도 자리가 없을 때만 거부됨")
+    void 저장소_크기_제한() {
+        store.maxEntries = 2;
+        store.issue("a@skku.edu");
+        store.issue("b@skku.edu");
+
+        assertThatThrownBy(() -> store.issue("c@skku.edu"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("verification_code_store_full");
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(600));
+        store.issue("c@skku.edu");
+
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("만료된 코드는 백그라운드에서 정리됨")
+    void 만료_코드_정리() throws InterruptedException {
+        store.sweepIntervalSeconds = 1;
+        store.start();
+        try {
+            store.issue("old@skku.edu");
+            now.addAndGet(TimeUnit.SECONDS.toMillis(300));
+            store.issue("new@skku.edu");
+            now.addAndGet(TimeUnit.SECONDS.toMillis(300));
+
+            for (int i = 0; i < 30 && store.size() > 1; i++) {
+                Thread.sleep(100);
+            }
+
+            assertThat(store.size()).isEqualTo(1);
+        } finally {
+            store.stop();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package skkuchin.service.mail;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//로컬 가짜 SMTP 서버(GreenMail)로 발송 큐 검증
+public class MailServiceTest {
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private MailService mailService;
+
+    @BeforeEach
+    public void setup() {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("localhost");
+        sender.setPort(ServerSetupTest.SMTP.getPort());
+
+        mailService = new MailService();
+        mailService.emailSender = sender;
+        mailService.codeStore = new InMemoryVerificationCodeStore();
+        mailService.backoffMillis = 50;
+        mailService.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        mailService.stop();
+    }
+
+    @Test
+    @DisplayName("요청마다 다른 인증 코드가 바로 반환되고 메일이 전송됨")
+    void 인증_메일_비동기_발송() throws Exception {
+        List<MailService.MailHandle> handles = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            handles.add(mailService.send("user" + i + "@skku.edu"));
+        }
+
+        Set<String> codes = new HashSet<>();
+        handles.forEach(handle -> codes.add(handle.getAuthNum()));
+        assertThat(codes).hasSize(30);
+
+        CompletableFuture.allOf(handles.stream().map(MailService.MailHandle::getDelivery)
+                .toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(30);
+        for (MimeMessage message : received) {
+            String to = message.getAllRecipients()[0].toString();
+            String code = handles.get(Integer.parseInt(to.substring(4, to.indexOf('@')))).getAuthNum();
+            assertThat(message.getContent().toString()).contains("authNum=" + code);
+        }
+    }
+
+    @Test
+    @DisplayName("SMTP 서버가 잠시 내려가도 재시도 후 전송됨")
+    void 전송_실패_재시도() throws Exception {
+        greenMail.stop();
+        MailService.MailHandle handle = mailService.send("retry@skku.edu");
+
+        Thread.sleep(100);
+        greenMail.start();
+
+        handle.getDelivery().get(10, TimeUnit.SECONDS);
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("큐가 가득 차 거절된 요청은 코드 발급이 취소되어 바로 다시 요청할 수 있음")
+    void 큐_초과_발급_취소() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        JavaMailSenderImpl blocked = new JavaMailSenderImpl() {
+            @Override
+            public void send(MimeMessage... mimeMessages) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        MailService full = new MailService();
+        full.emailSender = blocked;
+        full.codeStore = new InMemoryVerificationCodeStore();
+        full.workerCount = 1;
+        full.queueCapacity = 1;
+        full.batchSize = 1;
+        full.start();
+        try {
+            MailService.MailHandle sending = full.send("first@skku.edu");
+            MailService.MailHandle queued = null;
+            for (int i = 0; i < 100 && queued == null; i++) {
+                //워커가 첫 메일을 꺼내 가야 큐에 자리가 생김
+                MailService.MailHandle handle = full.send("second" + i + "@skku.edu");
+                if (!handle.getDelivery().isCompletedExceptionally()) {
+                    queued = handle;
+                } else {
+                    Thread.sleep(10);
+                }
+            }
+            assertThat(queued).isNotNull();
+
+            MailService.MailHandle rejected = full.send("third@skku.edu");
+            assertThatThrownBy(() -> rejected.getDelivery().get(1, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(RejectedExecutionException.class);
+            assertThat(full.confirmCode("third@skku.edu", rejected.getAuthNum())).isFalse();
+
+            release.countDown();
+            CompletableFuture.allOf(sending.getDelivery(), queued.getDelivery()).get(10, TimeUnit.SECONDS);
+
+            MailService.MailHandle again = full.send("third@skku.edu");
+            again.getDelivery().get(10, TimeUnit.SECONDS);
+            assertThat(full.confirmCode("third@skku.edu", again.getAuthNum())).isTrue();
+        } finally {
+            release.countDown();
+            full.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("종료할 때 보내지 못한 메일은 기다리는 쪽에 실패로 알림")
+    void 종료시_대기_메일_실패_처리() throws Exception {
+        mailService.backoffMillis = 60_000;
+        greenMail.stop();
+        MailService.MailHandle handle = mailService.send("stopped@skku.edu");
+
+        Thread.sleep(200);
+        mailService.stop();
+
+        assertThatThrownBy(() -> handle.getDelivery().get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class);
+        assertThat(mailService.send("late@skku.edu").getDelivery()).isCompletedExceptionally();
+        greenMail.start();
+    }
+}
@@ -1,41 +1,16 @@
 package io.getarrays.userservice;
 
-import io.getarrays.userservice.domain.Role;
-import io.getarrays.userservice.domain.User;
-import io.getarrays.userservice.service.UserService;
-import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
-
-import java.util.ArrayList;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class UserserviceApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(UserserviceApplication.class, args);
-	}
-
-	@Bean
-	CommandLineRunner run(UserService userService) {
-		return args -> {
-			userService.saveRole(new Role(null, "ROLE_USER"));
-			userService.saveRole(new Role(null, "ROLE_MANAGER"));
-			userService.saveRole(new Role(null, "ROLE_ADMIN"));
-			userService.saveRole(new Role(null, "ROLE_SUPER_ADMIN"));
-
-			userService.saveUser(new User(null, "John Travolta", "john", "1234", new ArrayList<>()));
-			userService.saveUser(new User(null, "Will Smith", "will", "1234", new ArrayList<>()));
-			userService.saveUser(new User(null, "Jim Carry", "jim", "1234", new ArrayList<>()));
-			userService.saveUser(new User(null, "Song Yejin", "yejin", "1234", new ArrayList<>()));
-
-			userService.addRoleToUser("yejin", "ROLE_USER");
-			userService.addRoleToUser("will", "ROLE_MANAGER");
-			userService.addRoleToUser("jim", "ROLE_ADMIN");
-			userService.addRoleToUser("john", "ROLE_SUPER_ADMIN");
-			userService.addRoleToUser("john", "ROLE_ADMIN");
-			userService.addRoleToUser("john", "ROLE_USER");
-		};
+		SpringApplication app = new SpringApplication(UserserviceApplication.class);
+		// records the startup steps for /actuator/startup and StartupReport
+		app.setApplicationStartup(new BufferingApplicationStartup(4096));
+		app.run(args);
 	}
 }
@@ -0,0 +1,52 @@
+package io.getarrays.userservice.api;
+
+import io.getarrays.userservice.service.ChangeEvent;
+import io.getarrays.userservice.service.ChangeEventOutbox;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+/**
+ * Incremental sync for downstream services: events after a sequence number, either as a page to poll or as a
+ * server-sent event stream that continues live. A consumer asking for events the retention job has already
+ * deleted gets 410 and has to start over from GET /api/users.
+ */
+@RestController
+@RequestMapping("/api/events")
+@RequiredArgsConstructor
+public class ChangeEventResource {
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final ChangeEventOutbox outbox;
+    private final ChangeEventStream stream;
+
+    @GetMapping
+    public ResponseEntity<List<ChangeEvent>> getEvents(@RequestParam(defaultValue = "0") long after,
+                                                       @RequestParam(defaultValue = "500") int limit) {
+        if (expired(after)) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+        return ResponseEntity.ok().body(outbox.findAfter(after, Math.max(1, Math.min(limit, MAX_PAGE_SIZE))));
+    }
+
+    // browsers reconnecting an EventSource send the last id they saw as Last-Event-ID
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEvents(@RequestParam(required = false) Long after,
+                                                   @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        long from = lastEventId != null ? lastEventId : after != null ? after : 0;
+        if (expired(from)) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+        return ResponseEntity.ok().body(stream.subscribe(from));
+    }
+
+    private boolean expired(long after) {
+        long oldest = outbox.oldestRetained();
+        return oldest > 0 && after < oldest - 1;
+    }
+}
@@ -0,0 +1,167 @@
+package io.getarrays.userservice.api;
+
+import io.getarrays.userservice.service.ChangeEvent;
+import io.getarrays.userservice.service.ChangeEventOutbox;
+import io.getarrays.userservice.service.ChangeEventSink;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * The local ChangeEventSink: pushes published events to server-sent-event subscribers. Each subscriber is
+ * served by one task at a time on the application task executor, which first replays the outbox from the
+ * requested sequence and then drains whatever the relay handed over meanwhile, so events go out once and in
+ * order and a slow client never holds up the relay. A client falling more than max-pending events behind is
+ * disconnected; it reconnects with Last-Event-ID and catches up from the outbox.
+ */
+@Component @Slf4j
+public class ChangeEventStream implements ChangeEventSink, MeterBinder {
+    private final ChangeEventOutbox outbox;
+    private final Executor executor;
+    private final Duration timeout;
+    private final int replayBatchSize;
+    private final int maxPending;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    public ChangeEventStream(ChangeEventOutbox outbox,
+                             @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor executor,
+                             @Value("${userservice.events.stream.timeout:30m}") Duration timeout,
+                             @Value("${userservice.events.stream.replay-batch-size:500}") int replayBatchSize,
+                             @Value("${userservice.events.stream.max-pending:10000}") int maxPending) {
+        this.outbox = outbox;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.replayBatchSize = replayBatchSize;
+        this.maxPending = maxPending;
+    }
+
+    @Override
+    public void publish(List<ChangeEvent> events) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(events);
+        }
+    }
+
+    public SseEmitter subscribe(long after) {
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeout.toMillis()), after);
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(e -> subscribers.remove(subscriber));
+        // registered before the replay reads, so nothing published in between is missed
+        subscribers.add(subscriber);
+        executor.execute(subscriber);
+        return subscriber.emitter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("userservice.events.stream.subscribers", subscribers, List::size)
+                .description("Open change event streams")
+                .register(registry);
+    }
+
+    private final class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        // only touched by the one task serving this subscriber
+        private long lastSent;
+        private boolean replayed;
+        private volatile boolean open = true;
+        // guarded by this
+        private boolean draining = true;
+        private final List<ChangeEvent> pending = new ArrayList<>();
+
+        Subscriber(SseEmitter emitter, long after) {
+            this.emitter = emitter;
+            this.lastSent = after;
+        }
+
+        void offer(List<ChangeEvent> events) {
+            boolean start;
+            synchronized (this) {
+                if (!open) {
+                    return;
+                }
+                if (pending.size() + events.size() > maxPending) {
+                    pending.clear();
+                    close(new IllegalStateException("more than " + maxPending + " events behind"));
+                    return;
+                }
+                pending.addAll(events);
+                start = !draining;
+                draining = true;
+            }
+            if (start) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!replayed) {
+                    List<ChangeEvent> page;
+                    do {
+                        page = outbox.findAfter(lastSent, replayBatchSize);
+                        send(page);
+                    } while (page.size() == replayBatchSize && open);
+                    replayed = true;
+                }
+                while (open) {
+                    List<ChangeEvent> batch;
+                    synchronized (this) {
+                        if (pending.isEmpty()) {
+                            draining = false;
+                            return;
+                        }
+                        batch = new ArrayList<>(pending);
+                        pending.clear();
+                    }
+                    send(batch);
+                }
+            } catch (RuntimeException e) {
+                close(e);
+            }
+        }
+
+        private void send(List<ChangeEvent> events) {
+            for (ChangeEvent event : events) {
+                if (!open) {
+                    return;
+                }
+                // the replay and the live batches overlap around the moment of subscribing
+                if (event.getSequence() <= lastSent) {
+                    continue;
+                }
+                try {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(event.getSequence()))
+                            .name(event.getType().name())
+                            .data(event));
+                    lastSent = event.getSequence();
+                } catch (IOException | IllegalStateException e) {
+                    close(e);
+                }
+            }
+        }
+
+        private void close(Exception e) {
+            open = false;
+            subscribers.remove(this);
+            log.debug("Change event stream closed after sequence {}", lastSent, e);
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.getarrays.userservice.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request carrying an Idempotency-Key at most once per key within ttl. Concurrent requests with the same
+ * key wait for the first one instead of repeating its write; later ones get the recorded response back, marked
+ * with Idempotent-Replayed. Reusing a key for a different payload is answered with 422. A request that throws
+ * is not recorded, so the client may retry it under the same key.
+ */
+@Component
+public class IdempotencyCache implements MeterBinder {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Outcome>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, Outcome> completed;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+
+    public IdempotencyCache(@Value("${userservice.idempotency.maximum-size:100000}") long maximumSize,
+                            @Value("${userservice.idempotency.ttl:10m}") Duration ttl) {
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    // key should already be scoped to the caller; fingerprint is a digest of the payload sent under it
+    public ResponseEntity<byte[]> execute(String key, byte[] fingerprint, Supplier<ResponseEntity<byte[]>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+        Outcome outcome = completed.getIfPresent(key);
+        if (outcome != null) {
+            replayed.increment();
+            return replay(outcome, fingerprint);
+        }
+        CompletableFuture<Outcome> mine = new CompletableFuture<>();
+        CompletableFuture<Outcome> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            joined.increment();
+            return replay(await(running), fingerprint);
+        }
+        try {
+            // a request finishing between the lookup above and putIfAbsent has already recorded its outcome
+            outcome = completed.getIfPresent(key);
+            if (outcome == null) {
+                executed.increment();
+                outcome = new Outcome(fingerprint, action.get());
+                completed.put(key, outcome);
+                mine.complete(outcome);
+                return outcome.response;
+            }
+            mine.complete(outcome);
+            replayed.increment();
+            return replay(outcome, fingerprint);
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private ResponseEntity<byte[]> replay(Outcome outcome, byte[] fingerprint) {
+        if (!MessageDigest.isEqual(outcome.fingerprint, fingerprint)) {
+            mismatched.increment();
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(outcome.response.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(outcome.response.getBody(), headers, outcome.response.getStatusCode());
+    }
+
+    private static Outcome await(CompletableFuture<Outcome> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("userservice.idempotency.requests", executed, LongAdder::sum)
+                .tag("outcome", "executed").register(registry);
+        FunctionCounter.builder("userservice.idempotency.requests", joined, LongAdder::sum)
+                .tag("outcome", "joined").register(registry);
+        FunctionCounter.builder("userservice.idempotency.requests", replayed, LongAdder::sum)
+                .tag("outcome", "replayed").register(registry);
+        FunctionCounter.builder("userservice.idempotency.requests", mismatched, LongAdder::sum)
+                .tag("outcome", "mismatched").register(registry);
+    }
+
+    private static final class Outcome {
+        private final byte[] fingerprint;
+        private final ResponseEntity<byte[]> response;
+
+        Outcome(byte[] fingerprint, ResponseEntity<byte[]> response) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package io.getarrays.userservice.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Turns away excess requests before Spring Security and the database see them. Token buckets limit each client
+ * address, failed password checks per username (a username whose budget is used up gets no further attempts,
+ * from any address, until it refills) and each configured write endpoint across all clients; over a limit the
+ * answer is 429 with Retry-After. Once
+ * max-concurrent requests are in flight further ones get 503 straight away. Client buckets live in bounded
+ * caches and are dropped after idle-timeout without a request. Actuator endpoints are never limited.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(name = "userservice.ratelimit.enabled", matchIfMissing = true)
+public class RateLimitFilter extends OncePerRequestFilter implements MeterBinder {
+    private static final String BASIC = "Basic ";
+    private static final String LOGIN_PATH = "/login";
+
+    private final Limit perIp;
+    private final Limit perUsername;
+    private final int maxConcurrent;
+    private final Cache<String, Bucket> ipBuckets;
+    private final Cache<String, Bucket> usernameBuckets;
+    // fixed set of paths, so these never need evicting
+    private final Map<String, Bucket> endpointBuckets = new HashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder ipRejections = new LongAdder();
+    private final LongAdder usernameRejections = new LongAdder();
+    private final LongAdder endpointRejections = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    public RateLimitFilter(@Value("${userservice.ratelimit.per-ip.capacity:100}") int ipCapacity,
+                           @Value("${userservice.ratelimit.per-ip.per-second:50}") double ipRate,
+                           @Value("${userservice.ratelimit.per-username.capacity:10}") int usernameCapacity,
+                           @Value("${userservice.ratelimit.per-username.per-second:1}") double usernameRate,
+                           @Value("${userservice.ratelimit.per-endpoint.capacity:50}") int endpointCapacity,
+                           @Value("${userservice.ratelimit.per-endpoint.per-second:20}") double endpointRate,
+                           @Value("${userservice.ratelimit.endpoints:/api/user/save,/api/users/import,/login}") Set<String> endpoints,
+                           @Value("${userservice.ratelimit.max-concurrent:256}") int maxConcurrent,
+                           @Value("${userservice.ratelimit.max-clients:100000}") long maxClients,
+                           @Value("${userservice.ratelimit.idle-timeout:10m}") Duration idleTimeout) {
+        this.perIp = new Limit(ipCapacity, ipRate);
+        this.perUsername = new Limit(usernameCapacity, usernameRate);
+        this.maxConcurrent = maxConcurrent;
+        this.ipBuckets = Caffeine.newBuilder().maximumSize(maxClients).expireAfterAccess(idleTimeout).build();
+        this.usernameBuckets = Caffeine.newBuilder().maximumSize(maxClients).expireAfterAccess(idleTimeout).build();
+        Limit perEndpoint = new Limit(endpointCapacity, endpointRate);
+        long now = System.nanoTime();
+        for (String endpoint : endpoints) {
+            endpointBuckets.put(endpoint, new Bucket(perEndpoint, now));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long now = System.nanoTime();
+        long wait = ipBuckets.get(request.getRemoteAddr(), ip -> new Bucket(perIp, now)).tryAcquire(now);
+        if (wait > 0) {
+            ipRejections.increment();
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, wait);
+            return;
+        }
+        String username = credentialUsername(request);
+        if (username != null) {
+            Bucket failures = usernameBuckets.getIfPresent(username);
+            wait = failures == null ? 0 : failures.waitTime(now);
+            if (wait > 0) {
+                usernameRejections.increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, wait);
+                return;
+            }
+        }
+        Bucket endpoint = endpointBuckets.get(request.getRequestURI());
+        if (endpoint != null && !"GET".equals(request.getMethod())) {
+            wait = endpoint.tryAcquire(now);
+            if (wait > 0) {
+                endpointRejections.increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, wait);
+                return;
+            }
+        }
+        if (inFlight.incrementAndGet() > maxConcurrent) {
+            inFlight.decrementAndGet();
+            shed.increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // Only failed checks use up a username's budget, so its owner's correct logins and ordinary requests are
+    // never limited while someone guessing its password is.
+    @EventListener
+    public void onBadCredentials(AuthenticationFailureBadCredentialsEvent event) {
+        long now = System.nanoTime();
+        usernameBuckets.get(event.getAuthentication().getName(), name -> new Bucket(perUsername, now)).tryAcquire(now);
+    }
+
+    // the username of a request that will be authenticated with a password: HTTP Basic or the login form,
+    // unless a valid session already carries the authentication
+    private static String credentialUsername(HttpServletRequest request) {
+        if (request.getRequestedSessionId() != null && request.isRequestedSessionIdValid()) {
+            return null;
+        }
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.regionMatches(true, 0, BASIC, 0, BASIC.length())) {
+            try {
+                String credentials = new String(Base64.getDecoder().decode(authorization.substring(BASIC.length()).trim()),
+                        StandardCharsets.UTF_8);
+                int colon = credentials.indexOf(':');
+                return colon < 0 ? null : credentials.substring(0, colon);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if ("POST".equals(request.getMethod()) && LOGIN_PATH.equals(request.getRequestURI())) {
+            return request.getParameter("username");
+        }
+        return null;
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long waitNanos) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("userservice.ratelimit.rejections", ipRejections, LongAdder::sum)
+                .tag("limit", "ip").register(registry);
+        FunctionCounter.builder("userservice.ratelimit.rejections", usernameRejections, LongAdder::sum)
+                .tag("limit", "username").register(registry);
+        FunctionCounter.builder("userservice.ratelimit.rejections", endpointRejections, LongAdder::sum)
+                .tag("limit", "endpoint").register(registry);
+        FunctionCounter.builder("userservice.ratelimit.rejections", shed, LongAdder::sum)
+                .tag("limit", "concurrency").register(registry);
+        Gauge.builder("userservice.ratelimit.in.flight", inFlight, AtomicInteger::get)
+                .description("Requests admitted by the rate limiter and not yet completed")
+                .register(registry);
+        Gauge.builder("userservice.ratelimit.clients", ipBuckets, Cache::estimatedSize)
+                .description("Client addresses with a live token bucket")
+                .register(registry);
+    }
+
+    private static final class Limit {
+        private final long interval;
+        private final long tolerance;
+
+        Limit(int capacity, double perSecond) {
+            this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+            this.tolerance = interval * (Math.max(1, capacity) - 1);
+        }
+    }
+
+    // token bucket kept as one timestamp, the moment it will be full again (GCRA): a CAS per request, no lock
+    private static final class Bucket {
+        private final Limit limit;
+        private final AtomicLong next;
+
+        Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.next = new AtomicLong(now);
+        }
+
+        // like tryAcquire, without taking the token
+        long waitTime(long now) {
+            return Math.max(0, Math.max(next.get(), now) - now - limit.tolerance);
+        }
+
+        // 0 when admitted, otherwise the nanoseconds until a token is available
+        long tryAcquire(long now) {
+            while (true) {
+                long current = next.get();
+                long base = Math.max(current, now);
+                long wait = base - now - limit.tolerance;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (next.compareAndSet(current, base + limit.interval)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.getarrays.userservice.api;
+
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// reads "name,username,password[,ROLE_A;ROLE_B]" rows, an optional header line is skipped
+class UserCsvReader {
+    private UserCsvReader() {
+    }
+
+    static List<User> read(InputStream in) throws IOException {
+        List<User> users = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = split(line);
+            if (first && "username".equalsIgnoreCase(field(fields, 1))) {
+                first = false;
+                continue;
+            }
+            first = false;
+            List<Role> roles = new ArrayList<>();
+            String roleNames = field(fields, 3);
+            if (roleNames != null && !roleNames.isBlank()) {
+                for (String roleName : roleNames.split(";")) {
+                    roles.add(new Role(null, roleName.trim()));
+                }
+            }
+            users.add(new User(null, field(fields, 0), field(fields, 1), field(fields, 2), roles));
+        }
+        return users;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index) : null;
+    }
+
+    // splits one line on commas, honouring double-quoted fields and "" escapes
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString().trim());
+        return fields;
+    }
+}
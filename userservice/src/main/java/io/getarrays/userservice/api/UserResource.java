@@ -1,32 +1,217 @@
 package io.getarrays.userservice.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.getarrays.userservice.domain.ChangeCounter;
 import io.getarrays.userservice.domain.Role;
 import io.getarrays.userservice.domain.User;
+import io.getarrays.userservice.service.BulkImportResult;
+import io.getarrays.userservice.service.DataVersion;
+import io.getarrays.userservice.service.UserPage;
 import io.getarrays.userservice.service.UserService;
+import io.getarrays.userservice.service.UserView;
 import lombok.Data;
-import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api")
-@RequiredArgsConstructor
 public class UserResource {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    // clients may keep responses but must revalidate them, which an unchanged ETag answers with 304
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final UserService userService;
+    private final IdempotencyCache idempotencyCache;
+    private final DataVersion dataVersion;
+    private volatile UsersSnapshot usersSnapshot;
+    // typed writers resolve their serializers once instead of per response
+    private final ObjectWriter userListWriter;
+    private final ObjectWriter userLineWriter;
+    private final ObjectWriter userViewWriter;
+    private final ObjectWriter userWriter;
+
+    public UserResource(UserService userService, IdempotencyCache idempotencyCache, DataVersion dataVersion,
+                        ObjectMapper objectMapper) {
+        this.userService = userService;
+        this.idempotencyCache = idempotencyCache;
+        this.dataVersion = dataVersion;
+        this.userListWriter = objectMapper.writerFor(new TypeReference<List<UserView>>() {});
+        this.userLineWriter = objectMapper.writerFor(UserView.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.userViewWriter = objectMapper.writerFor(UserView.class);
+        this.userWriter = objectMapper.writerFor(User.class);
+    }
 
+    // The ETag is the change counter, read before anything else: a client that is up to date gets its 304
+    // without users being loaded or serialized, and every instance hands out the same tag for the same data.
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getUsers() {
-        return ResponseEntity.ok().body(userService.getUsers());
+    public ResponseEntity<byte[]> getUsers(WebRequest request) throws JsonProcessingException {
+        ChangeCounter version = dataVersion.current();
+        if (isNotModified(request, version)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(REVALIDATE)
+                .body(usersJson(version.getVersion()));
+    }
+
+    // tagged with the counter too: any change may be this user's, and telling which would mean loading it
+    @GetMapping("/user/{username}")
+    public ResponseEntity<byte[]> getUser(@PathVariable String username, WebRequest request) throws JsonProcessingException {
+        ChangeCounter version = dataVersion.current();
+        if (isNotModified(request, version)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
+        }
+        UserView user = userService.getUserView(username);
+        if (user == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(REVALIDATE)
+                .body(userViewWriter.writeValueAsBytes(user));
+    }
+
+    // The serialized list is reused while the counter stays where it was built at. Users are loaded after the
+    // counter was read, so the bytes are never older than the version they are kept under.
+    private byte[] usersJson(long version) throws JsonProcessingException {
+        UsersSnapshot snapshot = usersSnapshot;
+        if (snapshot != null && snapshot.version == version) {
+            return snapshot.json;
+        }
+        synchronized (this) {
+            snapshot = usersSnapshot;
+            if (snapshot != null && snapshot.version == version) {
+                return snapshot.json;
+            }
+            byte[] json = userListWriter.writeValueAsBytes(userService.getUsers());
+            if (snapshot == null || snapshot.version < version) {
+                usersSnapshot = new UsersSnapshot(version, json);
+            }
+            return json;
+        }
+    }
+
+    // also sets ETag and Last-Modified on the response, for the 200 as well
+    private static boolean isNotModified(WebRequest request, ChangeCounter version) {
+        return request.checkNotModified('"' + Long.toString(version.getVersion()) + '"',
+                version.getChangedAt().toEpochMilli());
     }
 
+    @GetMapping("/users/page")
+    public ResponseEntity<UserPage> getUsersPage(@RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok().body(userService.getUsers(cursor, size));
+    }
+
+    @GetMapping("/users/search")
+    public ResponseEntity<List<UserView>> searchUsers(@RequestParam(required = false) String prefix,
+                                                      @RequestParam(required = false) String contains,
+                                                      @RequestParam(required = false) String role,
+                                                      @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok().body(userService.searchUsers(prefix, contains, role, limit));
+    }
+
+    @GetMapping(value = "/users", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        StreamingResponseBody body = out -> {
+            BufferedOutputStream buffer = new BufferedOutputStream(out);
+            userService.streamUsers(user -> {
+                try {
+                    userLineWriter.writeValue(buffer, user);
+                    buffer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            buffer.flush();
+        };
+        return ResponseEntity.ok().body(body);
+    }
+
+    // serialized here so a replayed response is the recorded bytes, not a re-rendered entity
     @PostMapping("/user/save")
-    public ResponseEntity<User> saveUser(@RequestBody User user) {
-        URI uri = URI.create(ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/user/save").toString());
-        return ResponseEntity.created(uri).body(userService.saveUser(user));
+    public ResponseEntity<byte[]> saveUser(@RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+                                           @RequestBody User user, Principal principal) {
+        String key = idempotencyKey == null ? null : (principal == null ? "" : principal.getName()) + ':' + idempotencyKey;
+        return idempotencyCache.execute(key, fingerprint(user), () -> {
+            URI uri = URI.create(ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/user/save").toString());
+            try {
+                return ResponseEntity.created(uri)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(userWriter.writeValueAsBytes(userService.saveUser(user)));
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // taken before saving, which assigns the id; a digest keeps the password out of the replay cache. Fields are
+    // length-prefixed so that moving characters from one field to the next changes the digest.
+    private static byte[] fingerprint(User user) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, user.getName());
+        update(digest, user.getUsername());
+        update(digest, user.getPassword());
+        if (user.getRoles() != null) {
+            for (Role role : user.getRoles()) {
+                update(digest, role == null ? null : role.getName());
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void update(MessageDigest digest, String field) {
+        if (field == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+        digest.update(bytes);
+    }
+
+    @PostMapping(value = "/users/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkImportResult> importUsers(@RequestBody List<User> users) {
+        return ResponseEntity.ok().body(userService.importUsers(users));
+    }
+
+    @PostMapping(value = "/users/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BulkImportResult> importUsersCsv(@RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return ResponseEntity.ok().body(userService.importUsers(UserCsvReader.read(in)));
+        }
     }
 
     @PostMapping("/role/save")
@@ -40,6 +225,28 @@ public class UserResource {
         userService.addRoleToUser(form.getUsername(), form.getRoleName());
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping("/role/addtousers")
+    public ResponseEntity<Integer> addRoleToUsers(@RequestBody RoleToUsersForm form) {
+        return ResponseEntity.ok().body(
+                userService.addRoleToUsers(form.getRoleName(), form.getUsernames(), form.getUsernamePattern()));
+    }
+
+    @PostMapping("/role/removefromusers")
+    public ResponseEntity<Integer> removeRoleFromUsers(@RequestBody RoleToUsersForm form) {
+        return ResponseEntity.ok().body(
+                userService.removeRoleFromUsers(form.getRoleName(), form.getUsernames(), form.getUsernamePattern()));
+    }
+
+    private static final class UsersSnapshot {
+        private final long version;
+        private final byte[] json;
+
+        UsersSnapshot(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
 }
 
 @Data
@@ -47,3 +254,11 @@ class RoleToUserForm {
     private String username;
     private String roleName;
 }
+
+@Data
+class RoleToUsersForm {
+    private String roleName;
+    private List<String> usernames;
+    // SQL LIKE pattern, e.g. "dev_%"
+    private String usernamePattern;
+}
@@ -0,0 +1,44 @@
+package io.getarrays.userservice.config;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+/**
+ * Picks the BCrypt cost for this machine. The cost is the log2 of the rounds, so each step doubles the time of
+ * a hash: starting from min, the cost goes up while twice the last measured hash still fits the target. Each
+ * cost is timed twice and the faster run counts, which keeps calibration under about four times the target.
+ */
+final class BCryptCalibration {
+    private static final String SAMPLE = "calibration-sample";
+    private static final int WARM_UP_HASHES = 20;
+
+    private BCryptCalibration() {
+    }
+
+    static int strengthFor(Duration target, int min, int max) {
+        // the first hashes pay for class loading and the JIT, keep them out of the measurements
+        BCryptPasswordEncoder warmUp = new BCryptPasswordEncoder(4);
+        for (int i = 0; i < WARM_UP_HASHES; i++) {
+            warmUp.encode(SAMPLE);
+        }
+        int strength = min;
+        long nanos = hashNanos(strength);
+        while (strength < max && nanos * 2 <= target.toNanos()) {
+            strength++;
+            nanos = hashNanos(strength);
+        }
+        return strength;
+    }
+
+    private static long hashNanos(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+}
@@ -0,0 +1,99 @@
+package io.getarrays.userservice.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the hashing of a PasswordEncoder on a fixed pool with a bounded queue. A login storm then uses at most
+ * threads cores for BCrypt instead of every request thread's, and once queue-capacity checks are waiting further
+ * ones fail straight away with PasswordCheckRejectedException, which PasswordCheckRejectionFilter answers with 503.
+ * upgradeEncoding answers false unless rehash-on-login is on, so a successful login only rewrites a stored hash
+ * made with another encoding or a lower cost when asked to.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, MeterBinder {
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final boolean rehashOnLogin;
+    private final LongAdder rejected = new LongAdder();
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, boolean rehashOnLogin) {
+        this.delegate = delegate;
+        this.rehashOnLogin = rehashOnLogin;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "password-check-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    // only inspects the stored hash's prefix, not worth a hand-off
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return rehashOnLogin && delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> check) {
+        Future<T> future;
+        try {
+            future = executor.submit(check);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordCheckRejectedException("Too many password checks waiting");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordCheckRejectedException("Interrupted while waiting for a password check");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("userservice.password.checks.rejected", rejected, LongAdder::sum)
+                .description("Password checks turned away because the pool and its queue were full")
+                .register(registry);
+        Gauge.builder("userservice.password.checks.queued", executor, e -> e.getQueue().size())
+                .description("Password checks waiting for a thread")
+                .register(registry);
+    }
+}
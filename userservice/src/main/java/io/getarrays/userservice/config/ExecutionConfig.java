@@ -0,0 +1,62 @@
+package io.getarrays.userservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Selects how blocking work is executed, via userservice.execution.mode:
+ * <ul>
+ *     <li>platform (default): Tomcat's bounded worker pool, so request concurrency is capped by
+ *     server.tomcat.threads.max;</li>
+ *     <li>virtual: one virtual thread per request and per @Async/MVC async task (JDK 21+), so a request
+ *     blocked on JDBC no longer holds a platform thread and concurrency is bounded by the Hikari pool.</li>
+ * </ul>
+ */
+@Configuration
+@EnableAsync
+@ConditionalOnProperty(name = "userservice.execution.mode", havingValue = "virtual")
+@Slf4j
+public class ExecutionConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        log.info("Running requests and async tasks on virtual threads ({})", Runtime.version());
+        return newVirtualThreadPerTaskExecutor("userservice-virtual-");
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    // replaces Boot's pooled applicationTaskExecutor, which backs both @Async and StreamingResponseBody
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+    public TaskExecutorAdapter applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+    // reflective so the module still compiles for Java 11; see the jdk21 profile in pom.xml
+    static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(
+                    "userservice.execution.mode=virtual needs JDK 21 or newer, running on " + Runtime.version(), e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package io.getarrays.userservice.config;
+
+// thrown on the request thread when the password-check pool and its queue are full
+public class PasswordCheckRejectedException extends RuntimeException {
+    public PasswordCheckRejectedException(String message) {
+        super(message);
+    }
+}
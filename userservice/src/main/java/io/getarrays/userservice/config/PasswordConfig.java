@@ -0,0 +1,56 @@
+package io.getarrays.userservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+@Configuration @Slf4j
+public class PasswordConfig {
+    private static final Pattern ENCODED = Pattern.compile("^\\{.+}.*$");
+
+    // New hashes are bcrypt at the cost calibrated here; {noop} stays readable for passwords given in
+    // configuration. A stored value without an {id} prefix matches nothing.
+    @Bean(destroyMethod = "shutdown")
+    @SuppressWarnings("deprecation")
+    public BoundedPasswordEncoder passwordEncoder(@Value("${userservice.password-check.threads:2}") int threads,
+                                                  @Value("${userservice.password-check.queue-capacity:32}") int queueCapacity,
+                                                  @Value("${userservice.password-check.target-time:100ms}") Duration targetTime,
+                                                  @Value("${userservice.password-check.min-cost:10}") int minCost,
+                                                  @Value("${userservice.password-check.max-cost:14}") int maxCost,
+                                                  @Value("${userservice.password-check.rehash-on-login:false}") boolean rehashOnLogin) {
+        int cost = BCryptCalibration.strengthFor(targetTime, minCost, maxCost);
+        log.info("Hashing passwords with BCrypt cost {} (target {} per hash, rehash on login {})",
+                cost, targetTime, rehashOnLogin ? "on" : "off");
+        PasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of(
+                "bcrypt", new BCryptPasswordEncoder(cost),
+                "noop", NoOpPasswordEncoder.getInstance()));
+        return new BoundedPasswordEncoder(encoder, threads, queueCapacity, rehashOnLogin);
+    }
+
+    // Boot's default user, defined here because with an encoder bean Boot would store its password unprefixed.
+    // It is hashed once at startup; as the only UserDetailsPasswordService it also takes rehash-on-login updates.
+    @Bean
+    public InMemoryUserDetailsManager userDetailsService(SecurityProperties properties, PasswordEncoder passwordEncoder) {
+        SecurityProperties.User user = properties.getUser();
+        String password = user.getPassword();
+        if (user.isPasswordGenerated()) {
+            log.warn("Using generated security password: {}", password);
+        }
+        return new InMemoryUserDetailsManager(User.withUsername(user.getName())
+                .password(ENCODED.matcher(password).matches() ? password : passwordEncoder.encode(password))
+                .roles(user.getRoles().toArray(new String[0]))
+                .build());
+    }
+}
@@ -0,0 +1,132 @@
+package io.getarrays.userservice.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Polls the replica and decides whether it may serve reads. The lag query may be MySQL's SHOW REPLICA STATUS
+ * (Seconds_Behind_Source / Seconds_Behind_Master is picked from the row) or anything returning seconds in its
+ * first column; without one only connectivity is checked. A failed check, a NULL lag (replication stopped) or
+ * a lag above max-lag sends reads to the primary until a later check passes.
+ */
+@Slf4j
+class ReplicaLagMonitor implements MeterBinder, AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final ScheduledExecutorService scheduler;
+
+    // reads stay on the primary until the first check has passed, which covers startup
+    private volatile boolean available;
+    private volatile double lagSeconds = Double.NaN;
+    private final LongAdder fallbacks = new LongAdder();
+
+    ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag, Duration checkInterval) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    boolean routeReadToReplica() {
+        if (!available) {
+            fallbacks.increment();
+        }
+        return available;
+    }
+
+    void check() {
+        try {
+            update(readLag());
+        } catch (SQLException | RuntimeException e) {
+            if (available) {
+                log.warn("Replica check failed, reading from the primary", e);
+            }
+            update(null);
+        }
+    }
+
+    void update(Duration lag) {
+        boolean ok = lag != null && lag.compareTo(maxLag) <= 0;
+        lagSeconds = lag == null ? Double.NaN : lag.toSeconds();
+        if (ok != available) {
+            if (ok) {
+                log.info("Replica is back (lag {}), reading from the replica", lag);
+            } else {
+                log.warn("Replica lag {} exceeds {}, reading from the primary", lag, maxLag);
+            }
+        }
+        available = ok;
+    }
+
+    private Duration readLag() throws SQLException {
+        try (Connection connection = replica.getConnection()) {
+            if (lagQuery.isEmpty()) {
+                if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    throw new SQLException("Replica connection is not valid");
+                }
+                return Duration.ZERO;
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                // no replication status at all, e.g. a standalone database standing in for the replica
+                if (!rs.next()) {
+                    return Duration.ZERO;
+                }
+                long seconds = rs.getLong(lagColumn(rs.getMetaData()));
+                return rs.wasNull() ? null : Duration.ofSeconds(seconds);
+            }
+        }
+    }
+
+    private static int lagColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String label = metaData.getColumnLabel(i);
+            if ("Seconds_Behind_Source".equalsIgnoreCase(label) || "Seconds_Behind_Master".equalsIgnoreCase(label)) {
+                return i;
+            }
+        }
+        return 1;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("userservice.datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .description("Replication lag of the read replica, NaN when unknown")
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("userservice.datasource.replica.available", this, monitor -> monitor.available ? 1 : 0)
+                .description("Whether read-only transactions are routed to the replica")
+                .register(registry);
+        FunctionCounter.builder("userservice.datasource.replica.fallbacks", fallbacks, LongAdder::sum)
+                .description("Read-only transactions sent to the primary because the replica was unavailable")
+                .register(registry);
+    }
+}
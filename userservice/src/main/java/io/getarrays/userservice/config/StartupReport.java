@@ -0,0 +1,66 @@
+package io.getarrays.userservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Logs the slowest startup steps once the application is ready, when it was started with a
+ * BufferingApplicationStartup (UserserviceApplication.main does; the full timeline is on /actuator/startup).
+ * With userservice.startup.exit-on-ready=true the application then shuts down, which is how the cds build
+ * profile runs its training start.
+ */
+@Component @Slf4j
+public class StartupReport {
+    private final int slowestSteps;
+    private final boolean exitOnReady;
+
+    public StartupReport(@Value("${userservice.startup.slowest-steps:10}") int slowestSteps,
+                           @Value("${userservice.startup.exit-on-ready:false}") boolean exitOnReady) {
+        this.slowestSteps = slowestSteps;
+        this.exitOnReady = exitOnReady;
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        ApplicationStartup startup = context.getBeanFactory().getApplicationStartup();
+        if (startup instanceof BufferingApplicationStartup) {
+            report(((BufferingApplicationStartup) startup).getBufferedTimeline().getEvents());
+        }
+        if (exitOnReady) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private void report(List<TimelineEvent> events) {
+        List<TimelineEvent> slowest = events.stream()
+                .sorted(Comparator.comparing(TimelineEvent::getDuration).reversed())
+                .limit(slowestSteps)
+                .collect(Collectors.toList());
+        log.info("Startup recorded {} steps, slowest: {}", events.size(),
+                slowest.stream().map(StartupReport::describe).collect(Collectors.joining(", ")));
+    }
+
+    private static String describe(TimelineEvent event) {
+        StringBuilder text = new StringBuilder(event.getStartupStep().getName());
+        for (StartupStep.Tag tag : event.getStartupStep().getTags()) {
+            if ("beanName".equals(tag.getKey())) {
+                text.append('[').append(tag.getValue()).append(']');
+            }
+        }
+        return text.append(' ').append(event.getDuration().toMillis()).append(" ms").toString();
+    }
+}
@@ -0,0 +1,28 @@
+package io.getarrays.userservice.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * The single row counting committed changes to users and roles. Every writing transaction bumps it alongside
+ * its outbox events, so all instances read the same version, and a higher one always means newer data.
+ */
+@Entity @Data @NoArgsConstructor @AllArgsConstructor
+@Table(name = "change_counter")
+public class ChangeCounter {
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+    @Column(nullable = false)
+    private long version;
+    @Column(nullable = false)
+    private Instant changedAt;
+}
@@ -0,0 +1,38 @@
+package io.getarrays.userservice.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+import static javax.persistence.GenerationType.SEQUENCE;
+
+/**
+ * A change written in the same transaction as the data it describes. sequenceNo stays null until the relay
+ * publishes the event; it is assigned in publish order, so unlike the id it never goes backwards when
+ * transactions commit out of order, and consumers resume from it.
+ */
+@Entity @Data @NoArgsConstructor @AllArgsConstructor
+@Table(name = "outbox_event", indexes = @Index(name = "uk_outbox_event_sequence_no", columnList = "sequence_no", unique = true))
+public class OutboxEvent {
+    public enum Type { USER_CREATED, USER_UPDATED, ROLE_CREATED }
+
+    @Id @GeneratedValue(strategy = SEQUENCE, generator = "outbox_seq")
+    @SequenceGenerator(name = "outbox_seq", sequenceName = "outbox_seq", allocationSize = 50)
+    private Long id;
+    @Column(name = "sequence_no")
+    private Long sequenceNo;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Type type;
+    // username or role name
+    @Column(nullable = false)
+    private String subject;
+    // compact JSON of the changed user (as UserView) or role
+    @Column(nullable = false, length = 4000)
+    private String payload;
+    @Column(nullable = false)
+    private Instant createdAt;
+}
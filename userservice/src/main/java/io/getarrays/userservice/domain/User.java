@@ -1,22 +1,38 @@
 package io.getarrays.userservice.domain;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.Collection;
 
-import static javax.persistence.GenerationType.AUTO;
+import static javax.persistence.GenerationType.SEQUENCE;
 
 @Entity @Data @NoArgsConstructor @AllArgsConstructor
+@Cacheable @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+// one row per username even under concurrent signups; also serves lookups and the search fallback's ordering
+@Table(indexes = @Index(name = User.USERNAME_INDEX, columnList = "username", unique = true))
 public class User {
-    @Id @GeneratedValue(strategy = AUTO)
+    public static final String USERNAME_INDEX = "uk_user_username";
+
+    // pooled sequence (a table on MySQL) hands out ids 50 at a time, which keeps inserts batchable
+    @Id @GeneratedValue(strategy = SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     private Long id;
     private String name;
     private String username;
+    // accepted on input, never written back out
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String password;
-    @ManyToMany(fetch = FetchType.EAGER)
+    // fetched per query through UserRepo's join-fetch queries, batch loading covers everything else
+    @ManyToMany(fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Collection<Role> roles = new ArrayList<>();
 }
@@ -0,0 +1,34 @@
+package io.getarrays.userservice.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lets through roughly one in {@code rate} events carrying the configured marker, below WARN.
+ * Runs before the event is built, so dropped messages never pay for parameter formatting.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+    private String marker = "SAMPLED";
+    private int rate = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (marker == null || rate <= 1 || level.isGreaterOrEqual(Level.WARN) || !marker.contains(this.marker)) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextInt(rate) == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setMarker(String marker) {
+        this.marker = marker;
+    }
+
+    public void setRate(int rate) {
+        this.rate = rate;
+    }
+}
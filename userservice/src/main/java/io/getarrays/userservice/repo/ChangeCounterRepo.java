@@ -0,0 +1,15 @@
+package io.getarrays.userservice.repo;
+
+import io.getarrays.userservice.domain.ChangeCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface ChangeCounterRepo extends JpaRepository<ChangeCounter, Integer> {
+    @Modifying
+    @Query("update ChangeCounter c set c.version = c.version + 1, c.changedAt = :now where c.id = " + ChangeCounter.ID)
+    int increment(@Param("now") Instant now);
+}
@@ -0,0 +1,34 @@
+package io.getarrays.userservice.repo;
+
+import io.getarrays.userservice.domain.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.time.Instant;
+import java.util.List;
+
+public interface OutboxEventRepo extends JpaRepository<OutboxEvent, Long> {
+    // for update: a second relay waits on the same oldest rows instead of numbering them alongside
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from OutboxEvent e where e.sequenceNo is null order by e.id")
+    List<OutboxEvent> findUnsequenced(Pageable pageable);
+
+    @Query("select e from OutboxEvent e where e.sequenceNo > :after order by e.sequenceNo")
+    List<OutboxEvent> findSequencedAfter(@Param("after") long after, Pageable pageable);
+
+    @Query("select coalesce(max(e.sequenceNo), 0) from OutboxEvent e")
+    long findMaxSequenceNo();
+
+    @Query("select coalesce(min(e.sequenceNo), 0) from OutboxEvent e")
+    long findMinSequenceNo();
+
+    // the newest published event is always kept back, it carries the sequence the relay continues from
+    @Modifying
+    @Query("delete from OutboxEvent e where e.sequenceNo < :below and e.createdAt < :before")
+    int deletePublished(@Param("below") long below, @Param("before") Instant before);
+}
@@ -1,8 +1,97 @@
 package io.getarrays.userservice.repo;
 
 import io.getarrays.userservice.domain.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH;
 
 public interface UserRepo extends JpaRepository<User, Long> {
-    User findByUsername(String user);
+    // distinct collapses the join-fetched rows back to one User, passDistinctThrough keeps it out of the SQL
+    @QueryHints({@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"),
+            @QueryHint(name = HINT_CACHEABLE, value = "true")})
+    @Query("select distinct u from User u left join fetch u.roles where u.username = :username")
+    User findByUsername(@Param("username") String user);
+
+    @Override
+    @QueryHints(@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"))
+    @Query("select distinct u from User u left join fetch u.roles")
+    List<User> findAll();
+
+    // read paths project straight into rows: no managed entities, no dirty-checking snapshots
+    String USER_ROLE_ROWS = "select new io.getarrays.userservice.repo.UserRoleRow(u.id, u.name, u.username, r.name) " +
+            "from User u left join u.roles r ";
+
+    @Query(USER_ROLE_ROWS + "order by u.id")
+    List<UserRoleRow> findAllRows();
+
+    @Query(USER_ROLE_ROWS + "where u.username = :username")
+    List<UserRoleRow> findRowsByUsername(@Param("username") String username);
+
+    @Query(USER_ROLE_ROWS + "where u.id in :ids order by u.id")
+    List<UserRoleRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(USER_ROLE_ROWS + "where u.username in :usernames order by u.id")
+    List<UserRoleRow> findRowsByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    @Query(USER_ROLE_ROWS + "where u.username like :pattern order by u.id")
+    List<UserRoleRow> findRowsByUsernameLike(@Param("pattern") String pattern);
+
+    // search fallback while the in-memory index is loading. Patterns come escaped with '!'; case-insensitive
+    // through the column collation (MySQL's default), the username index serves the ordering and the limit.
+    @Query("select u.id from User u where " +
+            "(:prefix is null or u.username like :prefix escape '!' or u.name like :prefix escape '!' " +
+            "or u.name like :wordPrefix escape '!') " +
+            "and (:contains is null or u.username like :contains escape '!' or u.name like :contains escape '!') " +
+            "and (:role is null or exists (select r.id from u.roles r where r.name = :role)) " +
+            "order by u.username")
+    List<Long> searchIds(@Param("prefix") String prefix, @Param("wordPrefix") String wordPrefix,
+                         @Param("contains") String contains, @Param("role") String role, Pageable pageable);
+
+    // keyset page: seek past the last id of the previous page instead of OFFSET. Only ids here,
+    // limiting the joined rows would cut a user's roles off at the page boundary.
+    @Query("select u.id from User u where u.id > :afterId order by u.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // with useCursorFetch=true on the url MySQL hands rows over in fetch-size chunks instead of buffering them all
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(USER_ROLE_ROWS + "order by u.id")
+    Stream<UserRoleRow> streamAllRows();
+
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    // set-based role grants/revokes straight on the user_roles join table, no User is loaded
+    @Modifying(clearAutomatically = true)
+    @Query(value = "insert into user_roles (user_id, roles_id) select u.id, :roleId from user u " +
+            "where u.username in :usernames and not exists " +
+            "(select 1 from user_roles ur where ur.user_id = u.id and ur.roles_id = :roleId)", nativeQuery = true)
+    int grantRole(@Param("roleId") Long roleId, @Param("usernames") Collection<String> usernames);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "insert into user_roles (user_id, roles_id) select u.id, :roleId from user u " +
+            "where u.username like :pattern and not exists " +
+            "(select 1 from user_roles ur where ur.user_id = u.id and ur.roles_id = :roleId)", nativeQuery = true)
+    int grantRoleByPattern(@Param("roleId") Long roleId, @Param("pattern") String pattern);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "delete from user_roles where roles_id = :roleId and user_id in " +
+            "(select u.id from user u where u.username in :usernames)", nativeQuery = true)
+    int revokeRole(@Param("roleId") Long roleId, @Param("usernames") Collection<String> usernames);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "delete from user_roles where roles_id = :roleId and user_id in " +
+            "(select u.id from user u where u.username like :pattern)", nativeQuery = true)
+    int revokeRoleByPattern(@Param("roleId") Long roleId, @Param("pattern") String pattern);
 }
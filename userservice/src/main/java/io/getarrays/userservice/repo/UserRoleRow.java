@@ -0,0 +1,12 @@
+package io.getarrays.userservice.repo;
+
+import lombok.Value;
+
+// one user/role pair from a JPQL constructor query; roleName is null for a user without roles
+@Value
+public class UserRoleRow {
+    Long userId;
+    String name;
+    String username;
+    String roleName;
+}
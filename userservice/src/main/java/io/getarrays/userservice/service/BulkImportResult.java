@@ -0,0 +1,41 @@
+package io.getarrays.userservice.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkImportResult {
+    private int created;
+    private int rejected;
+    private List<Row> rows = new ArrayList<>();
+
+    public void created(int index, String username, Long id) {
+        created++;
+        rows.add(new Row(index, username, Status.CREATED, id, null));
+    }
+
+    public void rejected(int index, String username, Status status, String reason) {
+        rejected++;
+        rows.add(new Row(index, username, status, null, reason));
+    }
+
+    public void merge(BulkImportResult other) {
+        created += other.created;
+        rejected += other.rejected;
+        rows.addAll(other.rows);
+    }
+
+    public enum Status { CREATED, DUPLICATE, INVALID }
+
+    @Data @AllArgsConstructor
+    public static class Row {
+        private int index;
+        private String username;
+        private Status status;
+        private Long id;
+        private String reason;
+    }
+}
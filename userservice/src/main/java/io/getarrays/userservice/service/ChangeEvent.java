@@ -0,0 +1,23 @@
+package io.getarrays.userservice.service;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import io.getarrays.userservice.domain.OutboxEvent;
+import lombok.Value;
+
+import java.time.Instant;
+
+// a published outbox event; the payload is embedded as JSON, not as a quoted string
+@Value
+public class ChangeEvent {
+    long sequence;
+    OutboxEvent.Type type;
+    String subject;
+    @JsonRawValue
+    String payload;
+    Instant createdAt;
+
+    static ChangeEvent of(OutboxEvent event) {
+        return new ChangeEvent(event.getSequenceNo(), event.getType(), event.getSubject(), event.getPayload(),
+                event.getCreatedAt());
+    }
+}
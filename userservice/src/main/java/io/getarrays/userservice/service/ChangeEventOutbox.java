@@ -0,0 +1,77 @@
+package io.getarrays.userservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.getarrays.userservice.domain.OutboxEvent;
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.repo.OutboxEventRepo;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes change events into the outbox table as part of the caller's transaction, so an event exists exactly
+ * when its change committed, and reads published events back for consumers resuming from a sequence number.
+ */
+@Component
+public class ChangeEventOutbox {
+    private final OutboxEventRepo outboxEventRepo;
+    private final EntityManager entityManager;
+    private final ObjectWriter userWriter;
+    private final ObjectWriter roleWriter;
+
+    public ChangeEventOutbox(OutboxEventRepo outboxEventRepo, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.outboxEventRepo = outboxEventRepo;
+        this.entityManager = entityManager;
+        this.userWriter = objectMapper.writerFor(UserView.class);
+        this.roleWriter = objectMapper.writerFor(Role.class);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void users(OutboxEvent.Type type, Collection<UserView> users) {
+        Instant now = Instant.now();
+        for (UserView user : users) {
+            entityManager.persist(new OutboxEvent(null, null, type, user.getUsername(), write(userWriter, user), now));
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void roleCreated(Role role) {
+        entityManager.persist(new OutboxEvent(null, null, OutboxEvent.Type.ROLE_CREATED, role.getName(),
+                write(roleWriter, new Role(role.getId(), role.getName())), Instant.now()));
+    }
+
+    // on the primary: a replica may not have the latest published rows yet, and a consumer that skipped
+    // them here would not see them on the live stream either
+    @Transactional
+    public List<ChangeEvent> findAfter(long after, int limit) {
+        List<ChangeEvent> events = new ArrayList<>();
+        for (OutboxEvent event : outboxEventRepo.findSequencedAfter(after, PageRequest.of(0, limit))) {
+            events.add(ChangeEvent.of(event));
+        }
+        return events;
+    }
+
+    // resuming after a sequence older than this one would miss events the retention job already deleted
+    @Transactional
+    public long oldestRetained() {
+        return outboxEventRepo.findMinSequenceNo();
+    }
+
+    private static String write(ObjectWriter writer, Object value) {
+        try {
+            return writer.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package io.getarrays.userservice.service;
+
+import java.util.List;
+
+/**
+ * Receives published change events from OutboxRelay, in sequence order and at least once: after a failure
+ * the same events are offered again, so implementations should skip sequences they have already seen.
+ */
+public interface ChangeEventSink {
+    void publish(List<ChangeEvent> events);
+}
@@ -0,0 +1,59 @@
+package io.getarrays.userservice.service;
+
+import io.getarrays.userservice.domain.ChangeCounter;
+import io.getarrays.userservice.repo.ChangeCounterRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+
+/**
+ * Counts committed changes to users and roles in the {@link ChangeCounter} row. Readers holding something built
+ * from the database compare the count they built it at with the current one to tell whether it may be reused;
+ * the count lives next to the data, so changes made through other instances are counted too.
+ */
+@Component @Slf4j
+public class DataVersion {
+    private static final ChangeCounter NEVER_CHANGED = new ChangeCounter(ChangeCounter.ID, 0, Instant.EPOCH);
+
+    private final ChangeCounterRepo changeCounterRepo;
+    private final TransactionTemplate transactionTemplate;
+
+    public DataVersion(ChangeCounterRepo changeCounterRepo, TransactionTemplate transactionTemplate) {
+        this.changeCounterRepo = changeCounterRepo;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // Before anything can write through this instance, so changed() always finds the row. Instances starting
+    // together may both insert it; the one whose insert fails uses the other's.
+    @PostConstruct
+    void createCounter() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!changeCounterRepo.existsById(ChangeCounter.ID)) {
+                    changeCounterRepo.save(new ChangeCounter(ChangeCounter.ID, 0, Instant.now()));
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.info("Change counter was created by another instance");
+        }
+    }
+
+    // read-only like the user reads, so it comes from the same database they do
+    @Transactional(readOnly = true)
+    public ChangeCounter current() {
+        return changeCounterRepo.findById(ChangeCounter.ID).orElse(NEVER_CHANGED);
+    }
+
+    // Called once, last in the writing transaction: the row stays locked until commit, so writers queue on it
+    // only for the commit itself.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void changed() {
+        changeCounterRepo.increment(Instant.now());
+    }
+}
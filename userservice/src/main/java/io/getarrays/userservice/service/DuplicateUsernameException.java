@@ -0,0 +1,11 @@
+package io.getarrays.userservice.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class DuplicateUsernameException extends RuntimeException {
+    public DuplicateUsernameException(String username) {
+        super("Username " + username + " already exists");
+    }
+}
@@ -0,0 +1,204 @@
+package io.getarrays.userservice.service;
+
+import io.getarrays.userservice.domain.OutboxEvent;
+import io.getarrays.userservice.repo.OutboxEventRepo;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves committed outbox events to the ChangeEventSinks. Each round numbers the oldest unnumbered events in one
+ * transaction, then hands everything numbered past the last delivered sequence to the sinks, in batches. A sink
+ * failure leaves the delivered mark where it was, so the same events are offered again next round. Published
+ * events older than retention are deleted.
+ * <p>
+ * Every instance runs a relay, since each one feeds its own sinks. Numbering locks the batch it numbers and
+ * continues from the highest number committed, so relays on other instances wait their turn instead of handing
+ * out the same numbers; delivery reads what any of them numbered. The unique index on sequence_no stays as the
+ * backstop.
+ */
+@Component @Slf4j
+@ConditionalOnProperty(name = "userservice.outbox.relay.enabled", matchIfMissing = true)
+public class OutboxRelay implements MeterBinder, SmartLifecycle {
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(10);
+
+    private final OutboxEventRepo outboxEventRepo;
+    private final List<ChangeEventSink> sinks;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration interval;
+    private final Duration retention;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile long lastSequence;
+    private volatile long delivered;
+    private volatile boolean running;
+    private final LongAdder relayed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public OutboxRelay(OutboxEventRepo outboxEventRepo, List<ChangeEventSink> sinks,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${userservice.outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${userservice.outbox.relay.interval:200ms}") Duration interval,
+                       @Value("${userservice.outbox.retention:7d}") Duration retention) {
+        this.outboxEventRepo = outboxEventRepo;
+        this.sinks = sinks;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.retention = retention;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // sinks start at the current end of the stream; consumers catch up on older events through the outbox
+    @Override
+    public void start() {
+        lastSequence = transactionTemplate.execute(status -> outboxEventRepo.findMaxSequenceNo());
+        delivered = lastSequence;
+        scheduler.scheduleWithFixedDelay(this::runSafely, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::cleanUpSafely, 1, 60, TimeUnit.MINUTES);
+        running = true;
+    }
+
+    // Lets a round in progress finish instead of interrupting it mid-transaction. Lifecycle beans stop before
+    // any bean is destroyed, so the datasource and entity manager factory are still there for it.
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(STOP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Outbox relay round still running after {}, interrupting it", STOP_TIMEOUT);
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // the highest phase stops first, ahead of the web server's graceful shutdown
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+            // contention with a relay on another instance, the next round picks up from what it committed
+            failures.increment();
+            log.info("Outbox relay round lost to another relay, retrying: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Outbox relay round failed, retrying", e);
+        }
+    }
+
+    void run() {
+        int numbered;
+        do {
+            numbered = number();
+            int batch;
+            do {
+                batch = deliver();
+            } while (batch == batchSize);
+        } while (numbered == batchSize);
+    }
+
+    // Also refreshes lastSequence when there is nothing to number, so events numbered by another instance are
+    // delivered here too.
+    private int number() {
+        Integer numbered = transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = outboxEventRepo.findUnsequenced(PageRequest.of(0, batchSize));
+            // read once the rows are locked, so it includes whatever the relay that held them committed
+            long next = outboxEventRepo.findMaxSequenceNo();
+            for (OutboxEvent event : events) {
+                if (event.getSequenceNo() == null) {
+                    event.setSequenceNo(++next);
+                }
+            }
+            outboxEventRepo.flush();
+            lastSequence = next;
+            return events.size();
+        });
+        return numbered == null ? 0 : numbered;
+    }
+
+    private int deliver() {
+        if (delivered >= lastSequence) {
+            return 0;
+        }
+        List<OutboxEvent> rows = transactionTemplate.execute(status ->
+                outboxEventRepo.findSequencedAfter(delivered, PageRequest.of(0, batchSize)));
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+        List<ChangeEvent> events = new ArrayList<>(rows.size());
+        for (OutboxEvent row : rows) {
+            events.add(ChangeEvent.of(row));
+        }
+        for (ChangeEventSink sink : sinks) {
+            sink.publish(events);
+        }
+        delivered = events.get(events.size() - 1).getSequence();
+        relayed.add(events.size());
+        return events.size();
+    }
+
+    private void cleanUpSafely() {
+        try {
+            long below = delivered;
+            Integer deleted = transactionTemplate.execute(status ->
+                    outboxEventRepo.deletePublished(below, Instant.now().minus(retention)));
+            if (deleted != null && deleted > 0) {
+                log.info("Deleted {} published outbox events older than {}", deleted, retention);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Outbox clean-up failed", e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("userservice.outbox.relayed", relayed, LongAdder::sum)
+                .description("Change events handed to the sinks")
+                .register(registry);
+        FunctionCounter.builder("userservice.outbox.failures", failures, LongAdder::sum)
+                .description("Relay rounds that failed and will be retried")
+                .register(registry);
+        Gauge.builder("userservice.outbox.sequence", this, relay -> relay.lastSequence)
+                .description("Highest sequence number assigned to an outbox event")
+                .register(registry);
+    }
+}
@@ -0,0 +1,97 @@
+package io.getarrays.userservice.service;
+
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.repo.RoleRepo;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-mostly view of the role table. Lookups read an immutable snapshot; writers publish a fresh copy once
+ * their transaction commits. A name the snapshot does not know, e.g. a role created through another instance,
+ * is looked up in the table once and published when found.
+ */
+@Component @RequiredArgsConstructor @Slf4j
+public class RoleRegistry implements MeterBinder {
+    private final RoleRepo roleRepo;
+
+    private volatile Map<String, Role> snapshot = Map.of();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    // loaded once the context is up (and before the seeding runner), not in @PostConstruct,
+    // since the repository would pull the meter registry back into this bean's creation
+    @EventListener(ContextRefreshedEvent.class)
+    public void refresh() {
+        List<Role> roles = roleRepo.findAll();
+        Map<String, Role> next = new HashMap<>();
+        for (Role role : roles) {
+            next.put(role.getName(), role);
+        }
+        snapshot = Map.copyOf(next);
+        refreshes.increment();
+        log.info("Loaded {} roles into the registry", next.size());
+    }
+
+    public Role findByName(String name) {
+        Role role = snapshot.get(name);
+        if (role != null) {
+            hits.increment();
+            return role;
+        }
+        misses.increment();
+        Role stored = name == null ? null : roleRepo.findByName(name);
+        if (stored == null) {
+            return null;
+        }
+        Role found = new Role(stored.getId(), stored.getName());
+        AfterCommit.run(() -> publish(found));
+        return found;
+    }
+
+    // returns the registry's own instance of a known role name so callers can share one String per role
+    public String intern(String name) {
+        Role role = snapshot.get(name);
+        return role == null ? name : role.getName();
+    }
+
+    public Collection<Role> getRoles() {
+        return snapshot.values();
+    }
+
+    public void register(Role role) {
+        AfterCommit.run(() -> publish(role));
+    }
+
+    private synchronized void publish(Role role) {
+        Map<String, Role> next = new HashMap<>(snapshot);
+        next.put(role.getName(), new Role(role.getId(), role.getName()));
+        snapshot = Map.copyOf(next);
+        refreshes.increment();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("userservice.role.registry.lookups", hits, LongAdder::sum)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("userservice.role.registry.lookups", misses, LongAdder::sum)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("userservice.role.registry.refreshes", refreshes, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("userservice.role.registry.size", this, r -> r.snapshot.size())
+                .register(registry);
+    }
+}
@@ -0,0 +1,86 @@
+package io.getarrays.userservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Seeds roles and users from userservice.seed.location (see seed.json) once the application is ready, on the
+ * application task executor unless userservice.seed.async=false. Safe to repeat: known roles are skipped and
+ * users go through importUsers, which reports existing usernames as duplicates instead of inserting them.
+ */
+@Component @Slf4j
+public class SeedLoader {
+    private final UserService userService;
+    private final RoleRegistry roleRegistry;
+    private final ObjectMapper objectMapper;
+    private final ResourceLoader resourceLoader;
+    private final Executor executor;
+    private final String location;
+    private final boolean async;
+
+    public SeedLoader(UserService userService, RoleRegistry roleRegistry, ObjectMapper objectMapper,
+                      ResourceLoader resourceLoader,
+                      @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor executor,
+                      @Value("${userservice.seed.location:}") String location,
+                      @Value("${userservice.seed.async:true}") boolean async) {
+        this.userService = userService;
+        this.roleRegistry = roleRegistry;
+        this.objectMapper = objectMapper;
+        this.resourceLoader = resourceLoader;
+        this.executor = executor;
+        this.location = location;
+        this.async = async;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (location.isEmpty()) {
+            return;
+        }
+        if (async) {
+            executor.execute(this::seed);
+        } else {
+            seed();
+        }
+    }
+
+    void seed() {
+        long start = System.nanoTime();
+        try (InputStream in = resourceLoader.getResource(location).getInputStream()) {
+            Seed seed = objectMapper.readValue(in, Seed.class);
+            int roles = 0;
+            for (String name : seed.getRoles()) {
+                if (roleRegistry.findByName(name) == null) {
+                    userService.saveRole(new Role(null, name));
+                    roles++;
+                }
+            }
+            BulkImportResult result = userService.importUsers(seed.getUsers());
+            log.info("Seeded {} roles and {} users from {} in {} ms ({} users already present or invalid)",
+                    roles, result.getCreated(), location, (System.nanoTime() - start) / 1_000_000, result.getRejected());
+        } catch (IOException | RuntimeException e) {
+            log.error("Seeding from {} failed", location, e);
+        }
+    }
+
+    @Data
+    static class Seed {
+        private List<String> roles = List.of();
+        private List<User> users = List.of();
+    }
+}
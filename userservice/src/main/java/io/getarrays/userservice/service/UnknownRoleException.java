@@ -0,0 +1,11 @@
+package io.getarrays.userservice.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnknownRoleException extends RuntimeException {
+    public UnknownRoleException(String roleName) {
+        super("Role " + roleName + " does not exist");
+    }
+}
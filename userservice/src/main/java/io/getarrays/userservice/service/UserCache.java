@@ -0,0 +1,50 @@
+package io.getarrays.userservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Near-cache of immutable user views by username, in front of Hibernate's shared second-level and
+ * query caches. Writers evict right away and again after commit, so a reader that loaded the old
+ * row while the transaction was open cannot leave it behind.
+ */
+@Component
+public class UserCache implements MeterBinder {
+    private final Cache<String, UserView> users;
+
+    public UserCache(@Value("${userservice.cache.users.maximum-size:10000}") long maximumSize,
+                     @Value("${userservice.cache.users.ttl:10m}") Duration ttl) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    public UserView get(String username, Function<String, UserView> loader) {
+        return users.get(username, loader);
+    }
+
+    public void evict(String username) {
+        users.invalidate(username);
+        AfterCommit.run(() -> users.invalidate(username));
+    }
+
+    public void evictAll() {
+        users.invalidateAll();
+        AfterCommit.run(users::invalidateAll);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, users, "users");
+    }
+}
@@ -0,0 +1,26 @@
+package io.getarrays.userservice.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// opaque cursor token for keyset pagination, carries the last id seen by the client
+public final class UserCursor {
+    private UserCursor() {
+    }
+
+    public static String encode(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor, e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package io.getarrays.userservice.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data @AllArgsConstructor
+public class UserPage {
+    private List<UserView> users;
+    private String nextCursor;
+}
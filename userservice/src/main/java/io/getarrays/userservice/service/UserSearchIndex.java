@@ -0,0 +1,304 @@
+package io.getarrays.userservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.getarrays.userservice.domain.OutboxEvent;
+import io.getarrays.userservice.repo.UserRepo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+
+/**
+ * In-memory search over username and name. Terms (the username, the full name and each word of it, lower-cased)
+ * sit in a sorted map for prefix lookups; trigrams of username and name point at users for substring lookups.
+ * Postings only narrow down candidates, every hit is checked against the user's current entry, so readers need
+ * no lock while a writer is midway through an update. Writers are serialized.
+ * <p>
+ * Kept current from the change events OutboxRelay publishes, which carry writes made through every instance.
+ * The relay delivers at least once, so sequences already applied are skipped.
+ */
+@Component @Slf4j
+public class UserSearchIndex implements ChangeEventSink, MeterBinder {
+    private static final int GRAM = 3;
+    private static final Comparator<UserView> BY_USERNAME = Comparator.comparing(UserView::getUsername);
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<String, Set<Long>> terms = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<Long>> grams = new ConcurrentHashMap<>();
+    // username order, walked when the query has no term to look up
+    private final ConcurrentNavigableMap<String, Long> byUsername = new ConcurrentSkipListMap<>();
+    private final ObjectReader userReader;
+    private volatile boolean ready;
+    private long applied;
+
+    public UserSearchIndex(ObjectMapper objectMapper) {
+        this.userReader = objectMapper.readerFor(UserView.class);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // initial load: a user already applied from a change event is kept, a later change to it comes as an event too
+    public synchronized void load(Collection<UserView> views) {
+        for (UserView view : views) {
+            if (!entries.containsKey(view.getId())) {
+                add(new Entry(view));
+            }
+        }
+        ready = true;
+    }
+
+    // events only describe committed writes; role events change no user and are passed over
+    @Override
+    public synchronized void publish(List<ChangeEvent> events) {
+        for (ChangeEvent event : events) {
+            if (event.getSequence() <= applied) {
+                continue;
+            }
+            applied = event.getSequence();
+            if (event.getType() == OutboxEvent.Type.ROLE_CREATED) {
+                continue;
+            }
+            UserView view;
+            try {
+                view = userReader.readValue(event.getPayload());
+            } catch (IOException e) {
+                log.warn("Skipping change event {} the search index cannot read", event.getSequence(), e);
+                continue;
+            }
+            Entry previous = entries.get(view.getId());
+            if (previous != null) {
+                remove(previous);
+            }
+            add(new Entry(view));
+        }
+    }
+
+    // Prefix against the username or any word of the name, contains against username or name (both
+    // case-insensitive), role exactly; null or blank criteria are ignored. Collecting stops at limit matches,
+    // taken in term order for a prefix and in username order without a term, and returned by username.
+    public List<UserView> search(String prefix, String contains, String role, int limit) {
+        String p = normalize(prefix);
+        String c = normalize(contains);
+        String r = role == null || role.isBlank() ? null : role;
+        Map<Long, UserView> found = new HashMap<>();
+        if (p != null) {
+            for (Set<Long> posting : terms.subMap(p, true, p + Character.MAX_VALUE, true).values()) {
+                if (collect(posting, p, c, r, limit, found)) {
+                    break;
+                }
+            }
+        } else if (c != null && c.length() >= GRAM) {
+            collect(gramCandidates(c), null, c, r, limit, found);
+        } else {
+            collect(byUsername.values(), null, c, r, limit, found);
+        }
+        List<UserView> result = new ArrayList<>(found.values());
+        result.sort(BY_USERNAME);
+        return result;
+    }
+
+    // true once limit matches are in
+    private boolean collect(Collection<Long> candidates, String prefix, String contains, String role, int limit,
+                            Map<Long, UserView> found) {
+        for (Long id : candidates) {
+            if (found.size() >= limit) {
+                return true;
+            }
+            Entry entry = entries.get(id);
+            if (entry != null && !found.containsKey(id) && entry.matches(prefix, contains, role)) {
+                found.put(id, entry.view);
+            }
+        }
+        return found.size() >= limit;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // users holding every trigram of the query: the shortest posting is enough, matches() checks the rest
+    private Collection<Long> gramCandidates(String contains) {
+        Set<Long> shortest = null;
+        for (String gram : grams(contains)) {
+            Set<Long> posting = grams.get(gram);
+            if (posting == null) {
+                return List.of();
+            }
+            if (shortest == null || posting.size() < shortest.size()) {
+                shortest = posting;
+            }
+        }
+        return shortest;
+    }
+
+    private void add(Entry entry) {
+        Long id = entry.view.getId();
+        entries.put(id, entry);
+        byUsername.put(entry.view.getUsername(), id);
+        for (String term : entry.terms()) {
+            terms.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        for (String gram : entry.grams()) {
+            grams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    private void remove(Entry entry) {
+        Long id = entry.view.getId();
+        entries.remove(id);
+        byUsername.remove(entry.view.getUsername(), id);
+        for (String term : entry.terms()) {
+            unpost(terms, term, id);
+        }
+        for (String gram : entry.grams()) {
+            unpost(grams, gram, id);
+        }
+    }
+
+    private static void unpost(Map<String, Set<Long>> postings, String key, Long id) {
+        Set<Long> posting = postings.get(key);
+        if (posting != null) {
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(key, posting);
+            }
+        }
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String normalize(String query) {
+        return query == null || query.isBlank() ? null : lower(query.strip());
+    }
+
+    private static String lower(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("userservice.search.index.size", this, UserSearchIndex::size)
+                .description("Users held by the in-memory search index")
+                .register(registry);
+    }
+
+    // a view with its lower-cased search fields, computed once per update instead of per query
+    private static final class Entry {
+        private final UserView view;
+        private final String username;
+        private final String name;
+        private final String[] words;
+
+        Entry(UserView view) {
+            this.view = view;
+            this.username = lower(view.getUsername());
+            this.name = lower(view.getName());
+            this.words = name.isBlank() ? new String[0] : name.strip().split("\\s+");
+        }
+
+        boolean matches(String prefix, String contains, String role) {
+            if (prefix != null && !username.startsWith(prefix) && !wordStartsWith(prefix)) {
+                return false;
+            }
+            if (contains != null && !username.contains(contains) && !name.contains(contains)) {
+                return false;
+            }
+            return role == null || view.getRoles().contains(role);
+        }
+
+        private boolean wordStartsWith(String prefix) {
+            for (String word : words) {
+                if (word.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Set<String> terms() {
+            Set<String> terms = new HashSet<>(List.of(words));
+            if (!username.isEmpty()) {
+                terms.add(username);
+            }
+            if (!name.isEmpty()) {
+                terms.add(name);
+            }
+            return terms;
+        }
+
+        Set<String> grams() {
+            Set<String> grams = UserSearchIndex.grams(username);
+            grams.addAll(UserSearchIndex.grams(name));
+            return grams;
+        }
+    }
+
+    // Fills the index after startup, off the readiness path; searches use the database until it is done. Without
+    // a relay nothing would keep the index current, so it is not loaded at all.
+    @Component @Slf4j
+    static class Loader {
+        private final UserSearchIndex index;
+        private final UserRepo userRepo;
+        private final RoleRegistry roleRegistry;
+        private final Executor executor;
+        private final ObjectProvider<OutboxRelay> relay;
+
+        Loader(UserSearchIndex index, UserRepo userRepo, RoleRegistry roleRegistry,
+               @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor executor,
+               ObjectProvider<OutboxRelay> relay) {
+            this.index = index;
+            this.userRepo = userRepo;
+            this.roleRegistry = roleRegistry;
+            this.executor = executor;
+            this.relay = relay;
+        }
+
+        // the relay is already running: writes committed while the rows load reach the index as events
+        @EventListener(ApplicationReadyEvent.class)
+        public void onReady() {
+            if (relay.getIfAvailable() == null) {
+                log.info("Outbox relay is disabled, searches stay on the database");
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    long start = System.nanoTime();
+                    index.load(UserViewFolder.fold(userRepo.findAllRows(), roleRegistry::intern));
+                    log.info("Search index loaded {} users in {} ms", index.size(), (System.nanoTime() - start) / 1_000_000);
+                } catch (RuntimeException e) {
+                    log.error("Loading the search index failed, searches stay on the database", e);
+                }
+            });
+        }
+    }
+}
@@ -4,11 +4,19 @@ import io.getarrays.userservice.domain.Role;
 import io.getarrays.userservice.domain.User;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserService {
     User saveUser(User user);
     Role saveRole(Role role);
     void addRoleToUser(String username, String roleName);
+    int addRoleToUsers(String roleName, List<String> usernames, String usernamePattern);
+    int removeRoleFromUsers(String roleName, List<String> usernames, String usernamePattern);
     User getUser(String username);
-    List<User>getUsers();
+    UserView getUserView(String username);
+    List<UserView> getUsers();
+    UserPage getUsers(String cursor, int size);
+    void streamUsers(Consumer<UserView> consumer);
+    List<UserView> searchUsers(String prefix, String contains, String role, int limit);
+    BulkImportResult importUsers(List<User> users);
 }
@@ -1,49 +1,368 @@
 package io.getarrays.userservice.service;
 
+import io.getarrays.userservice.domain.OutboxEvent;
 import io.getarrays.userservice.domain.Role;
 import io.getarrays.userservice.domain.User;
 import io.getarrays.userservice.repo.RoleRepo;
+import io.getarrays.userservice.repo.UserRoleRow;
 import io.getarrays.userservice.repo.UserRepo;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.transaction.Transactional;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service @RequiredArgsConstructor @Transactional @Slf4j
+@Timed("userservice.service")
 public class UserServiceImpl implements UserService{
+    // high-volume read logs, thinned out by SamplingTurboFilter in the prod profile
+    private static final Marker SAMPLED = MarkerFactory.getMarker("SAMPLED");
+    private static final int MAX_PAGE_SIZE = 500;
+    // rows checked for existing usernames and flushed together, a multiple of hibernate.jdbc.batch_size
+    private static final int IMPORT_CHUNK_SIZE = 500;
+    private static final int IMPORT_ATTEMPTS = 3;
+    // keeps the IN list of bulk role statements at a size every driver handles comfortably
+    private static final int ROLE_CHUNK_SIZE = 1000;
+    private static final int MAX_SEARCH_LIMIT = 100;
+
     private final UserRepo userRepo;
     private final RoleRepo roleRepo;
+    private final RoleRegistry roleRegistry;
+    private final UserCache userCache;
+    private final UserSearchIndex searchIndex;
+    private final ChangeEventOutbox outbox;
+    private final DataVersion dataVersion;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
     @Override
     public User saveUser(User user) {
         log.info("Saving new user {} to the database", user.getName());
-        return userRepo.save(user);
+        if (user.getUsername() != null && !userRepo.findExistingUsernames(List.of(user.getUsername())).isEmpty()) {
+            throw new DuplicateUsernameException(user.getUsername());
+        }
+        User saved;
+        try {
+            // flushed here so a signup racing past the check above fails on the unique index inside this call
+            saved = userRepo.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if (isUsernameConflict(e)) {
+                throw new DuplicateUsernameException(user.getUsername());
+            }
+            throw e;
+        }
+        userCache.evict(saved.getUsername());
+        changed(OutboxEvent.Type.USER_CREATED, List.of(toView(saved)));
+        return saved;
     }
 
     @Override
     public Role saveRole(Role role) {
         log.info("Saving new role {} to the database", role.getName());
-        return roleRepo.save(role);
+        Role saved = roleRepo.save(role);
+        roleRegistry.register(saved);
+        outbox.roleCreated(saved);
+        dataVersion.changed();
+        return saved;
     }
 
     @Override
     public void addRoleToUser(String username, String roleName) {
         log.info("Adding role {} to user {}", roleName, username);
+        Role known = roleRegistry.findByName(roleName);
+        if (known == null) {
+            throw new UnknownRoleException(roleName);
+        }
         User user = userRepo.findByUsername(username);
-        Role role = roleRepo.findByName(roleName);
+        // a reference proxy is enough to write the join row, no need to select the role again
+        Role role = roleRepo.getReferenceById(known.getId());
         user.getRoles().add(role);
+        userCache.evict(username);
+        // names from the registry: the reference proxy would be loaded just to read its name
+        List<String> roles = new ArrayList<>();
+        for (Role r : user.getRoles()) {
+            roles.add(r == role ? known.getName() : roleRegistry.intern(r.getName()));
+        }
+        changed(OutboxEvent.Type.USER_UPDATED, List.of(new UserView(user.getId(), user.getName(), user.getUsername(), roles)));
+    }
+
+    @Override
+    public int addRoleToUsers(String roleName, List<String> usernames, String usernamePattern) {
+        log.info("Adding role {} to {} users / pattern {}", roleName, usernames == null ? 0 : usernames.size(), usernamePattern);
+        return updateRoleForUsers(roleName, usernames, usernamePattern, true);
+    }
+
+    @Override
+    public int removeRoleFromUsers(String roleName, List<String> usernames, String usernamePattern) {
+        log.info("Removing role {} from {} users / pattern {}", roleName, usernames == null ? 0 : usernames.size(), usernamePattern);
+        return updateRoleForUsers(roleName, usernames, usernamePattern, false);
+    }
+
+    private int updateRoleForUsers(String roleName, List<String> usernames, String usernamePattern, boolean grant) {
+        Role role = roleRegistry.findByName(roleName);
+        if (role == null) {
+            throw new UnknownRoleException(roleName);
+        }
+        int changed = 0;
+        if (usernamePattern != null && !usernamePattern.isEmpty()) {
+            userCache.evictAll();
+            changed += grant ? userRepo.grantRoleByPattern(role.getId(), usernamePattern)
+                    : userRepo.revokeRoleByPattern(role.getId(), usernamePattern);
+            outbox.users(OutboxEvent.Type.USER_UPDATED,
+                    UserViewFolder.fold(userRepo.findRowsByUsernameLike(usernamePattern), roleRegistry::intern));
+        }
+        if (usernames != null) {
+            for (int from = 0; from < usernames.size(); from += ROLE_CHUNK_SIZE) {
+                List<String> chunk = usernames.subList(from, Math.min(from + ROLE_CHUNK_SIZE, usernames.size()));
+                changed += grant ? userRepo.grantRole(role.getId(), chunk) : userRepo.revokeRole(role.getId(), chunk);
+                outbox.users(OutboxEvent.Type.USER_UPDATED,
+                        UserViewFolder.fold(userRepo.findRowsByUsernameIn(chunk), roleRegistry::intern));
+            }
+            usernames.forEach(userCache::evict);
+        }
+        if (changed > 0) {
+            dataVersion.changed();
+        }
+        return changed;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public User getUser(String username) {
-        log.info("Fetching user {}", username);
+        log.info(SAMPLED, "Fetching user {}", username);
         return userRepo.findByUsername(username);
     }
 
+    // no transaction of its own: a near-cache hit should not borrow a connection
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public UserView getUserView(String username) {
+        log.info(SAMPLED, "Fetching user view {}", username);
+        return userCache.get(username, name -> {
+            List<UserView> views = UserViewFolder.fold(userRepo.findRowsByUsername(name), roleRegistry::intern);
+            return views.isEmpty() ? null : views.get(0);
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserView> getUsers() {
+        log.info(SAMPLED, "Fetching all users");
+        return UserViewFolder.fold(userRepo.findAllRows(), roleRegistry::intern);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserPage getUsers(String cursor, int size) {
+        Long afterId = UserCursor.decode(cursor);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        log.info(SAMPLED, "Fetching {} users after id {}", pageSize, afterId);
+        List<Long> ids = userRepo.findIdsAfter(afterId, PageRequest.of(0, pageSize));
+        List<UserView> users = ids.isEmpty() ? List.of()
+                : UserViewFolder.fold(userRepo.findRowsByIdIn(ids), roleRegistry::intern);
+        String nextCursor = ids.size() < pageSize ? null : UserCursor.encode(ids.get(ids.size() - 1));
+        return new UserPage(users, nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamUsers(Consumer<UserView> consumer) {
+        log.info(SAMPLED, "Streaming all users");
+        // projected rows never enter the persistence context, so it stays flat however many rows go past
+        UserViewFolder folder = new UserViewFolder(roleRegistry::intern, consumer);
+        try (Stream<UserRoleRow> rows = userRepo.streamAllRows()) {
+            rows.forEach(folder);
+        }
+        folder.finish();
+    }
+
+    // no transaction of its own when the index answers, like getUserView
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<UserView> searchUsers(String prefix, String contains, String role, int limit) {
+        int max = Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        log.info(SAMPLED, "Searching users prefix {} contains {} role {}", prefix, contains, role);
+        if (searchIndex.isReady()) {
+            return searchIndex.search(prefix, contains, role, max);
+        }
+        String p = like(prefix);
+        List<Long> ids = userRepo.searchIds(p == null ? null : p + "%", p == null ? null : "% " + p + "%",
+                like(contains) == null ? null : "%" + like(contains) + "%", role == null || role.isBlank() ? null : role,
+                PageRequest.of(0, max));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<UserView> users = UserViewFolder.fold(userRepo.findRowsByIdIn(ids), roleRegistry::intern);
+        users.sort(Comparator.comparing(UserView::getUsername));
+        return users;
+    }
+
+    // escapes the LIKE wildcards of a search term for searchIds, which declares '!' as its escape character
+    private static String like(String term) {
+        if (term == null || term.isBlank()) {
+            return null;
+        }
+        return term.strip().replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    // each chunk commits on its own, so a failure late in a large upload does not undo the rows already reported
     @Override
-    public List<User> getUsers() {
-        log.info("Fetching all users");
-        return userRepo.findAll();
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BulkImportResult importUsers(List<User> users) {
+        log.info("Importing {} users", users.size());
+        BulkImportResult result = new BulkImportResult();
+        Set<String> seen = new HashSet<>();
+        for (int from = 0; from < users.size(); from += IMPORT_CHUNK_SIZE) {
+            List<User> chunk = users.subList(from, Math.min(from + IMPORT_CHUNK_SIZE, users.size()));
+            importChunk(chunk, from, seen, result);
+        }
+        result.getRows().sort(Comparator.comparingInt(BulkImportResult.Row::getIndex));
+        return result;
+    }
+
+    // A signup committing between the existence check and the flush fails the chunk on uk_user_username. The
+    // chunk is rolled back and checked again, which then reports that username as a duplicate. Any other
+    // violation rejects the whole chunk.
+    private void importChunk(List<User> chunk, int from, Set<String> seen, BulkImportResult result) {
+        for (int attempt = 1; ; attempt++) {
+            BulkImportResult chunkResult = new BulkImportResult();
+            List<String> chunkSeen = new ArrayList<>(chunk.size());
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertChunk(chunk, from, seen, chunkSeen, chunkResult));
+                result.merge(chunkResult);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                seen.removeAll(chunkSeen);
+                if (!isUsernameConflict(e)) {
+                    // retrying will not help, and which row caused it is unknown
+                    log.warn("Import rows {} to {} were rejected by the database", from, from + chunk.size() - 1, e);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        result.rejected(from + i, chunk.get(i).getUsername(), BulkImportResult.Status.INVALID,
+                                "rejected by the database");
+                    }
+                    return;
+                }
+                if (attempt == IMPORT_ATTEMPTS) {
+                    log.warn("Import rows {} to {} kept conflicting with concurrent writes", from, from + chunk.size() - 1, e);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        result.rejected(from + i, chunk.get(i).getUsername(), BulkImportResult.Status.DUPLICATE,
+                                "conflicted with a concurrent signup");
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private void insertChunk(List<User> chunk, int from, Set<String> seen, List<String> chunkSeen, BulkImportResult result) {
+        List<String> usernames = new ArrayList<>(chunk.size());
+        for (User user : chunk) {
+            if (user.getUsername() != null) {
+                usernames.add(user.getUsername());
+            }
+        }
+        Set<String> existing = usernames.isEmpty() ? Set.of() : new HashSet<>(userRepo.findExistingUsernames(usernames));
+        List<User> created = new ArrayList<>(chunk.size());
+        List<Integer> createdIndexes = new ArrayList<>(chunk.size());
+        List<List<String>> createdRoles = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            int index = from + i;
+            User user = chunk.get(i);
+            String username = user.getUsername();
+            if (username == null || username.isBlank() || user.getPassword() == null) {
+                result.rejected(index, username, BulkImportResult.Status.INVALID, "username and password are required");
+            } else if (existing.contains(username) || seen.contains(username)) {
+                result.rejected(index, username, BulkImportResult.Status.DUPLICATE, "username already exists");
+            } else {
+                List<Role> roles = resolveRoles(user);
+                if (roles == null) {
+                    result.rejected(index, username, BulkImportResult.Status.INVALID, "unknown role");
+                    continue;
+                }
+                User entity = new User(null, user.getName(), username, user.getPassword(), roles);
+                entityManager.persist(entity);
+                // only a row that is being created claims its username, a rejected one leaves it to later rows
+                seen.add(username);
+                chunkSeen.add(username);
+                created.add(entity);
+                createdIndexes.add(index);
+                createdRoles.add(roleNames(user));
+            }
+        }
+        // through the repository, so a unique-index violation arrives as DataIntegrityViolationException
+        userRepo.flush();
+        entityManager.clear();
+        List<UserView> views = new ArrayList<>(created.size());
+        for (int i = 0; i < created.size(); i++) {
+            User entity = created.get(i);
+            result.created(createdIndexes.get(i), entity.getUsername(), entity.getId());
+            views.add(new UserView(entity.getId(), entity.getName(), entity.getUsername(), createdRoles.get(i)));
+        }
+        changed(OutboxEvent.Type.USER_CREATED, views);
+    }
+
+    // Every write that changes what a user looks like to readers goes through here. The search index follows
+    // the outbox events, on this instance and the others. Writes made of several statements write their events
+    // as they go and bump the data version once after the last of them.
+    private void changed(OutboxEvent.Type type, List<UserView> users) {
+        outbox.users(type, users);
+        dataVersion.changed();
+    }
+
+    // Only the username index means the username is taken; a not-null, length or foreign key violation is a
+    // real error. Drivers qualify the name differently (H2 adds schema and index suffix, MySQL the table).
+    private static boolean isUsernameConflict(DataIntegrityViolationException e) {
+        if (!(e.getCause() instanceof ConstraintViolationException)) {
+            return false;
+        }
+        String constraint = ((ConstraintViolationException) e.getCause()).getConstraintName();
+        return constraint != null && constraint.toLowerCase(Locale.ROOT).contains(User.USERNAME_INDEX);
+    }
+
+    private UserView toView(User user) {
+        return new UserView(user.getId(), user.getName(), user.getUsername(), roleNames(user));
+    }
+
+    private List<String> roleNames(User user) {
+        List<String> names = new ArrayList<>();
+        if (user.getRoles() != null) {
+            for (Role role : user.getRoles()) {
+                if (role != null && role.getName() != null) {
+                    names.add(roleRegistry.intern(role.getName()));
+                }
+            }
+        }
+        return names;
+    }
+
+    private List<Role> resolveRoles(User user) {
+        List<Role> roles = new ArrayList<>();
+        if (user.getRoles() == null) {
+            return roles;
+        }
+        for (Role requested : user.getRoles()) {
+            Role known = requested == null ? null : roleRegistry.findByName(requested.getName());
+            if (known == null) {
+                return null;
+            }
+            roles.add(roleRepo.getReferenceById(known.getId()));
+        }
+        return roles;
     }
 }
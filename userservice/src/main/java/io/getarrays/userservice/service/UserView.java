@@ -0,0 +1,14 @@
+package io.getarrays.userservice.service;
+
+import lombok.Value;
+
+import java.util.List;
+
+// read model for the list and detail responses: no password, no managed entity, role names only
+@Value
+public class UserView {
+    Long id;
+    String name;
+    String username;
+    List<String> roles;
+}
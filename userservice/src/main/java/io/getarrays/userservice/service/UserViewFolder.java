@@ -0,0 +1,51 @@
+package io.getarrays.userservice.service;
+
+import io.getarrays.userservice.repo.UserRoleRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// folds user/role rows, grouped by user id, into one UserView per user as they go past
+final class UserViewFolder implements Consumer<UserRoleRow> {
+    private final UnaryOperator<String> roleNames;
+    private final Consumer<UserView> downstream;
+    private UserRoleRow current;
+    private List<String> roles = new ArrayList<>();
+
+    UserViewFolder(UnaryOperator<String> roleNames, Consumer<UserView> downstream) {
+        this.roleNames = roleNames;
+        this.downstream = downstream;
+    }
+
+    static List<UserView> fold(List<UserRoleRow> rows, UnaryOperator<String> roleNames) {
+        List<UserView> views = new ArrayList<>();
+        UserViewFolder folder = new UserViewFolder(roleNames, views::add);
+        rows.forEach(folder);
+        folder.finish();
+        return views;
+    }
+
+    @Override
+    public void accept(UserRoleRow row) {
+        if (current != null && !current.getUserId().equals(row.getUserId())) {
+            finish();
+        }
+        if (current == null) {
+            current = row;
+        }
+        if (row.getRoleName() != null) {
+            roles.add(roleNames.apply(row.getRoleName()));
+        }
+    }
+
+    void finish() {
+        if (current == null) {
+            return;
+        }
+        downstream.accept(new UserView(current.getUserId(), current.getName(), current.getUsername(), List.copyOf(roles)));
+        current = null;
+        roles = new ArrayList<>();
+    }
+}
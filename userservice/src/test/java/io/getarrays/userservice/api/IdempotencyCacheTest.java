@@ -0,0 +1,95 @@
+package io.getarrays.userservice.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyCacheTest {
+	private final IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1));
+	private final AtomicInteger writes = new AtomicInteger();
+
+	@Test
+	void replaysTheRecordedResponseForTheSameKey() {
+		ResponseEntity<byte[]> first = cache.execute("k1", fingerprint(7), save("one"));
+		ResponseEntity<byte[]> second = cache.execute("k1", fingerprint(7), save("two"));
+
+		assertThat(writes).hasValue(1);
+		assertThat(first.getHeaders().containsKey(IdempotencyCache.REPLAYED_HEADER)).isFalse();
+		assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(second.getBody()).isEqualTo(first.getBody());
+		assertThat(second.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER)).isEqualTo("true");
+	}
+
+	@Test
+	void rejectsAKeyReusedForAnotherPayload() {
+		cache.execute("k1", fingerprint(7), save("one"));
+
+		assertThat(cache.execute("k1", fingerprint(8), save("two")).getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+		assertThat(writes).hasValue(1);
+	}
+
+	@Test
+	void runsEveryRequestWithoutAKey() {
+		cache.execute(null, fingerprint(7), save("one"));
+		cache.execute(null, fingerprint(7), save("one"));
+
+		assertThat(writes).hasValue(2);
+	}
+
+	@Test
+	void concurrentRequestsWaitForTheFirst() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<ResponseEntity<byte[]>> first = CompletableFuture.supplyAsync(() -> cache.execute("k1", fingerprint(7), () -> {
+			started.countDown();
+			await(release);
+			return save("one").get();
+		}));
+		started.await();
+		CompletableFuture<ResponseEntity<byte[]>> second = CompletableFuture.supplyAsync(() -> cache.execute("k1", fingerprint(7), save("two")));
+		Thread.sleep(50);
+		release.countDown();
+
+		assertThat(second.get().getBody()).isEqualTo(first.get().getBody());
+		assertThat(writes).hasValue(1);
+	}
+
+	@Test
+	void doesNotRecordAFailure() {
+		assertThatThrownBy(() -> cache.execute("k1", fingerprint(7), () -> {
+			throw new IllegalStateException("database down");
+		})).isInstanceOf(IllegalStateException.class);
+
+		assertThat(cache.execute("k1", fingerprint(7), save("one")).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(writes).hasValue(1);
+	}
+
+	private static byte[] fingerprint(int payload) {
+		return new byte[]{(byte) payload};
+	}
+
+	private Supplier<ResponseEntity<byte[]>> save(String body) {
+		return () -> {
+			writes.incrementAndGet();
+			return ResponseEntity.status(HttpStatus.CREATED).body(body.getBytes(StandardCharsets.UTF_8));
+		};
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
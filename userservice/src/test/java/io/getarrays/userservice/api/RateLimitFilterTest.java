@@ -0,0 +1,108 @@
+package io.getarrays.userservice.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+	@Test
+	void rejectsAnAddressOnceItsBurstIsUsed() throws Exception {
+		RateLimitFilter filter = filter(3, 10, 100);
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(call(filter, request("GET", "/api/users/page", "10.0.0.1")).getStatus()).isEqualTo(200);
+		}
+		MockHttpServletResponse rejected = call(filter, request("GET", "/api/users/page", "10.0.0.1"));
+		assertThat(rejected.getStatus()).isEqualTo(429);
+		assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1000");
+
+		assertThat(call(filter, request("GET", "/api/users/page", "10.0.0.2")).getStatus()).isEqualTo(200);
+		assertThat(call(filter, request("GET", "/actuator/health", "10.0.0.1")).getStatus()).isEqualTo(200);
+	}
+
+	@Test
+	void credentialRequestsAreNotChargedUntilTheirPasswordFails() throws Exception {
+		RateLimitFilter filter = filter(100, 2, 100);
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(call(filter, basic(request("GET", "/api/users", "10.0.1.1"), "john")).getStatus()).isEqualTo(200);
+		}
+	}
+
+	@Test
+	void limitsFailedPasswordChecksPerUsernameAcrossAddresses() throws Exception {
+		RateLimitFilter filter = filter(100, 2, 100);
+
+		filter.onBadCredentials(badCredentials("john"));
+		assertThat(call(filter, basic(request("GET", "/api/users", "10.0.1.1"), "john")).getStatus()).isEqualTo(200);
+		filter.onBadCredentials(badCredentials("john"));
+
+		MockHttpServletResponse rejected = call(filter, basic(request("GET", "/api/users", "10.0.1.9"), "john"));
+		assertThat(rejected.getStatus()).isEqualTo(429);
+		assertThat(call(filter, login("john", "10.0.1.8")).getStatus()).isEqualTo(429);
+		assertThat(call(filter, basic(request("GET", "/api/users", "10.0.1.9"), "will")).getStatus()).isEqualTo(200);
+		assertThat(call(filter, request("GET", "/api/users", "10.0.1.9")).getStatus()).isEqualTo(200);
+	}
+
+	@Test
+	void shedsRequestsBeyondTheConcurrencyLimit() throws Exception {
+		RateLimitFilter filter = filter(100, 10, 1);
+		MockHttpServletResponse nested = new MockHttpServletResponse();
+
+		MockHttpServletResponse outer = new MockHttpServletResponse();
+		filter.doFilter(request("GET", "/api/users", "10.0.2.1"), outer,
+				(req, res) -> filter.doFilter(request("GET", "/api/users", "10.0.2.2"), nested, new MockFilterChain()));
+
+		assertThat(outer.getStatus()).isEqualTo(200);
+		assertThat(nested.getStatus()).isEqualTo(503);
+		assertThat(call(filter, request("GET", "/api/users", "10.0.2.2")).getStatus()).isEqualTo(200);
+	}
+
+	private static RateLimitFilter filter(int ipCapacity, int usernameCapacity, int maxConcurrent) {
+		return new RateLimitFilter(ipCapacity, 0.001, usernameCapacity, 0.001, 100, 0.001,
+				Set.of("/api/user/save"), maxConcurrent, 1000, Duration.ofMinutes(1));
+	}
+
+	private static MockHttpServletRequest request(String method, String uri, String address) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+		request.setRemoteAddr(address);
+		return request;
+	}
+
+	private static MockHttpServletRequest basic(MockHttpServletRequest request, String username) {
+		String credentials = username + ":secret";
+		request.addHeader(HttpHeaders.AUTHORIZATION,
+				"Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+		return request;
+	}
+
+	private static MockHttpServletRequest login(String username, String address) {
+		MockHttpServletRequest request = request("POST", "/login", address);
+		request.setParameter("username", username);
+		request.setParameter("password", "secret");
+		return request;
+	}
+
+	private static AuthenticationFailureBadCredentialsEvent badCredentials(String username) {
+		return new AuthenticationFailureBadCredentialsEvent(new UsernamePasswordAuthenticationToken(username, "guess"),
+				new BadCredentialsException("Bad credentials"));
+	}
+
+	private static MockHttpServletResponse call(RateLimitFilter filter, MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+}
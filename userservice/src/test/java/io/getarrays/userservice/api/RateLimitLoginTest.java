@@ -0,0 +1,31 @@
+package io.getarrays.userservice.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"spring.security.user.name=alice", "spring.security.user.password=secret",
+		"userservice.ratelimit.per-username.capacity=3", "userservice.ratelimit.per-username.per-second=0.001"})
+@AutoConfigureMockMvc
+class RateLimitLoginTest {
+	@Autowired
+	private MockMvc mvc;
+
+	@Test
+	void onlyFailedLoginsUseUpAUsernamesBudget() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			mvc.perform(get("/api/users/page").with(httpBasic("alice", "secret"))).andExpect(status().isOk());
+		}
+		for (int i = 0; i < 3; i++) {
+			mvc.perform(get("/api/users/page").with(httpBasic("alice", "guess" + i))).andExpect(status().isUnauthorized());
+		}
+
+		mvc.perform(get("/api/users/page").with(httpBasic("alice", "secret"))).andExpect(status().isTooManyRequests());
+	}
+}
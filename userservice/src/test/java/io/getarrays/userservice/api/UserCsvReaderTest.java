@@ -0,0 +1,56 @@
+package io.getarrays.userservice.api;
+
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserCsvReaderTest {
+
+	@Test
+	void skipsTheHeaderAndReadsRoleLists() throws IOException {
+		List<User> users = read("name,username,password,roles\n" +
+				"Ada Lovelace,ada,pw1,ROLE_USER; ROLE_ADMIN\n" +
+				"\n" +
+				"Alan Turing,alan,pw2\n");
+
+		assertThat(users).extracting(User::getUsername).containsExactly("ada", "alan");
+		assertThat(users.get(0).getName()).isEqualTo("Ada Lovelace");
+		assertThat(users.get(0).getPassword()).isEqualTo("pw1");
+		assertThat(users.get(0).getRoles()).extracting(Role::getName).containsExactly("ROLE_USER", "ROLE_ADMIN");
+		assertThat(users.get(1).getRoles()).isEmpty();
+	}
+
+	@Test
+	void keepsTheFirstRowWithoutAHeader() throws IOException {
+		assertThat(read("Ada,ada,pw1\nAlan,alan,pw2")).extracting(User::getUsername).containsExactly("ada", "alan");
+	}
+
+	@Test
+	void honoursQuotedFields() throws IOException {
+		List<User> users = read("\"Lovelace, Ada\",ada,\"pa,ss\"\"word\",\"ROLE_USER;ROLE_MANAGER\"\n");
+
+		assertThat(users).hasSize(1);
+		assertThat(users.get(0).getName()).isEqualTo("Lovelace, Ada");
+		assertThat(users.get(0).getPassword()).isEqualTo("pa,ss\"word");
+		assertThat(users.get(0).getRoles()).extracting(Role::getName).containsExactly("ROLE_USER", "ROLE_MANAGER");
+	}
+
+	@Test
+	void leavesMissingFieldsNull() throws IOException {
+		User user = read("Ada,ada").get(0);
+
+		assertThat(user.getUsername()).isEqualTo("ada");
+		assertThat(user.getPassword()).isNull();
+	}
+
+	private static List<User> read(String csv) throws IOException {
+		return UserCsvReader.read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+	}
+}
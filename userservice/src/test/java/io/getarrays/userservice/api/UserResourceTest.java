@@ -0,0 +1,224 @@
+package io.getarrays.userservice.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.getarrays.userservice.domain.User;
+import io.getarrays.userservice.repo.ChangeCounterRepo;
+import io.getarrays.userservice.service.UserService;
+import io.getarrays.userservice.service.UserView;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser
+class UserResourceTest {
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private UserService userService;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private ChangeCounterRepo changeCounterRepo;
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Test
+	void userListIsNotModifiedUntilAUserChanges() throws Exception {
+		String etag = mvc.perform(get("/api/users"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertThat(etag).isNotNull();
+
+		mvc.perform(get("/api/users").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().bytes(new byte[0]));
+
+		userService.saveUser(new User(null, "Etag User", "etag-list", "1234", new ArrayList<>()));
+
+		mvc.perform(get("/api/users").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+	}
+
+	@Test
+	void userLookupIsNotModifiedUntilTheUserChanges() throws Exception {
+		userService.saveUser(new User(null, "Etag User", "etag-one", "1234", new ArrayList<>()));
+		String etag = mvc.perform(get("/api/user/etag-one"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mvc.perform(get("/api/user/etag-one").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+
+		userService.addRoleToUser("etag-one", "ROLE_USER");
+
+		mvc.perform(get("/api/user/etag-one").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("ROLE_USER")));
+	}
+
+	@Test
+	void userListNoticesAChangeCommittedThroughAnotherInstance() throws Exception {
+		userService.saveUser(new User(null, "Etag User", "etag-elsewhere", "1234", new ArrayList<>()));
+		String etag = mvc.perform(get("/api/users"))
+				.andExpect(status().isOk())
+				.andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		// another instance commits its change and bumps the shared counter; nothing happens in this one
+		transactionTemplate.executeWithoutResult(status -> changeCounterRepo.increment(Instant.now()));
+
+		mvc.perform(get("/api/users").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+	}
+
+	@Test
+	void pagesFollowTheCursorToTheLastPage() throws Exception {
+		for (int i = 0; i < 7; i++) {
+			userService.saveUser(new User(null, "Page User", "page" + i, "1234", new ArrayList<>()));
+		}
+		List<String> expected = userService.getUsers().stream().map(UserView::getUsername).collect(Collectors.toList());
+
+		List<String> paged = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			String uri = cursor == null ? "/api/users/page?size=3" : "/api/users/page?size=3&cursor=" + cursor;
+			JsonNode page = objectMapper.readTree(mvc.perform(get(uri))
+					.andExpect(status().isOk())
+					.andReturn().getResponse().getContentAsString());
+			page.get("users").forEach(user -> paged.add(user.get("username").asText()));
+			cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+			pages++;
+		} while (cursor != null && pages < 100);
+
+		assertThat(cursor).isNull();
+		assertThat(paged).containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	void malformedCursorIsABadRequest() throws Exception {
+		mvc.perform(get("/api/users/page").param("cursor", "!!notbase64"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get("/api/users/page").param("cursor", "bm90LWFuLWlk"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void streamWritesOneJsonLinePerUser() throws Exception {
+		List<UserView> expected = userService.getUsers();
+		MvcResult started = mvc.perform(get("/api/users").accept(UserResource.APPLICATION_NDJSON_VALUE))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		String body = mvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+
+		List<UserView> streamed = new ArrayList<>();
+		for (String line : body.split("\n")) {
+			streamed.add(objectMapper.readValue(line, UserView.class));
+		}
+		assertThat(streamed).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	void jsonImportReportsEveryRow() throws Exception {
+		String body = "[" +
+				"{\"name\": \"Import A\", \"username\": \"import-a\", \"password\": \"pw\", \"roles\": [{\"name\": \"ROLE_USER\"}]}," +
+				"{\"name\": \"Import A again\", \"username\": \"import-a\", \"password\": \"pw\"}," +
+				"{\"name\": \"Seeded\", \"username\": \"john\", \"password\": \"pw\"}," +
+				"{\"name\": \"No Password\", \"username\": \"import-b\"}," +
+				"{\"name\": \"Bad Role\", \"username\": \"import-c\", \"password\": \"pw\", \"roles\": [{\"name\": \"ROLE_NOPE\"}]}" +
+				"]";
+
+		mvc.perform(post("/api/users/import").with(csrf()).contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(1))
+				.andExpect(jsonPath("$.rejected").value(4))
+				.andExpect(jsonPath("$.rows[*].status").value(contains("CREATED", "DUPLICATE", "DUPLICATE", "INVALID", "INVALID")))
+				.andExpect(jsonPath("$.rows[0].id").isNumber())
+				.andExpect(jsonPath("$.rows[4].reason").value("unknown role"));
+
+		assertThat(userService.getUserView("import-a").getRoles()).containsExactly("ROLE_USER");
+		assertThat(userService.getUserView("import-c")).isNull();
+	}
+
+	@Test
+	void csvImportCreatesTheUploadedUsers() throws Exception {
+		String csv = "name,username,password,roles\n" +
+				"\"Csv, One\",csv-one,pw,ROLE_USER;ROLE_MANAGER\n" +
+				"Csv Two,csv-two,pw\n";
+		MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8));
+
+		mvc.perform(multipart("/api/users/import").file(file).with(csrf()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(2))
+				.andExpect(jsonPath("$.rows[*].index").value(contains(0, 1)));
+
+		UserView one = userService.getUserView("csv-one");
+		assertThat(one.getName()).isEqualTo("Csv, One");
+		assertThat(one.getRoles()).containsExactlyInAnyOrder("ROLE_USER", "ROLE_MANAGER");
+		assertThat(userService.getUserView("csv-two").getRoles()).isEmpty();
+	}
+
+	@Test
+	void signupIsReplayedUnderItsKeyAndConflictsOtherwise() throws Exception {
+		String body = "{\"name\": \"Signup\", \"username\": \"signup\", \"password\": \"pw\"}";
+
+		byte[] created = mvc.perform(post("/api/user/save").with(csrf()).header(IdempotencyCache.HEADER, "signup-1")
+						.contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isCreated())
+				.andReturn().getResponse().getContentAsByteArray();
+
+		mvc.perform(post("/api/user/save").with(csrf()).header(IdempotencyCache.HEADER, "signup-1")
+						.contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isCreated())
+				.andExpect(header().string(IdempotencyCache.REPLAYED_HEADER, "true"))
+				.andExpect(content().bytes(created));
+
+		mvc.perform(post("/api/user/save").with(csrf()).header(IdempotencyCache.HEADER, "signup-1")
+						.contentType(MediaType.APPLICATION_JSON).content(body.replace("\"pw\"", "\"other\"")))
+				.andExpect(status().isUnprocessableEntity());
+
+		mvc.perform(post("/api/user/save").with(csrf()).header(IdempotencyCache.HEADER, "signup-2")
+						.contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isConflict());
+		mvc.perform(post("/api/user/save").with(csrf()).contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isConflict());
+	}
+}
@@ -0,0 +1,31 @@
+package io.getarrays.userservice.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BCryptCalibrationTest {
+	@Test
+	void neverGoesBelowTheMinimum() {
+		assertThat(BCryptCalibration.strengthFor(Duration.ofNanos(1), 6, 12)).isEqualTo(6);
+	}
+
+	@Test
+	void neverGoesAboveTheMaximum() {
+		assertThat(BCryptCalibration.strengthFor(Duration.ofHours(1), 4, 6)).isEqualTo(6);
+	}
+
+	@Test
+	void stopsBeforeAHashWouldTakeLongerThanTheTarget() {
+		int strength = BCryptCalibration.strengthFor(Duration.ofMillis(20), 4, 20);
+
+		assertThat(strength).isBetween(4, 19);
+		// each step doubles the time, so two more are well past the target
+		long start = System.nanoTime();
+		BCrypt.hashpw("pw", BCrypt.gensalt(strength + 2));
+		assertThat(System.nanoTime() - start).isGreaterThan(Duration.ofMillis(20).toNanos());
+	}
+}
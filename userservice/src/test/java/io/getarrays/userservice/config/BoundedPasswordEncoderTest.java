@@ -0,0 +1,89 @@
+package io.getarrays.userservice.config;
+
+import io.getarrays.userservice.api.PasswordCheckRejectionFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedPasswordEncoderTest {
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, false);
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@BeforeEach
+	void setUp() {
+		encoder.bindTo(registry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		encoder.shutdown();
+	}
+
+	@Test
+	void rejectsChecksOnceThePoolAndQueueAreFull() throws Exception {
+		CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> encoder.matches("pw", "pw"));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> encoder.matches("pw", "other"));
+		while (!queued.isDone() && queuedChecks() == 0) {
+			Thread.sleep(5);
+		}
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> encoder.matches("pw", "pw")).isInstanceOf(PasswordCheckRejectedException.class);
+		assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+
+		release.countDown();
+		assertThat(running.get(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(queued.get(5, TimeUnit.SECONDS)).isFalse();
+		assertThat(encoder.matches("pw", "pw")).isTrue();
+		assertThat(registry.get("userservice.password.checks.rejected").functionCounter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void rejectedCheckIsAnsweredWithServiceUnavailable() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new PasswordCheckRejectionFilter().doFilter(new MockHttpServletRequest("GET", "/api/users"), response, (request, res) -> {
+			throw new PasswordCheckRejectedException("full");
+		});
+
+		assertThat(response.getStatus()).isEqualTo(503);
+		assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+	}
+
+	private double queuedChecks() {
+		return registry.get("userservice.password.checks.queued").gauge().value();
+	}
+
+	private class BlockingEncoder implements PasswordEncoder {
+		@Override
+		public String encode(CharSequence rawPassword) {
+			return rawPassword.toString();
+		}
+
+		@Override
+		public boolean matches(CharSequence rawPassword, String encodedPassword) {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return rawPassword.toString().equals(encodedPassword);
+		}
+	}
+}
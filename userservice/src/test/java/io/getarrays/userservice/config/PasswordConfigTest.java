@@ -0,0 +1,49 @@
+package io.getarrays.userservice.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"spring.security.user.name=alice", "spring.security.user.password=secret"})
+@AutoConfigureMockMvc
+class PasswordConfigTest {
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private InMemoryUserDetailsManager userDetailsManager;
+	@Autowired
+	private PasswordEncoder passwordEncoder;
+
+	@Test
+	void defaultUserIsStoredAsBcryptAndLogsIn() throws Exception {
+		assertThat(userDetailsManager.loadUserByUsername("alice").getPassword()).startsWith("{bcrypt}$2a$04$");
+
+		mvc.perform(get("/api/users/page").with(httpBasic("alice", "secret"))).andExpect(status().isOk());
+		mvc.perform(get("/api/users/page").with(httpBasic("alice", "wrong"))).andExpect(status().isUnauthorized());
+	}
+
+	@Test
+	void unprefixedPasswordIsNotComparedAsPlainText() {
+		assertThatThrownBy(() -> passwordEncoder.matches("secret", "secret")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void storedPasswordIsLeftAloneWhenRehashOnLoginIsOff() throws Exception {
+		userDetailsManager.createUser(User.withUsername("carol").password("{noop}pw").roles("USER").build());
+
+		mvc.perform(get("/api/users/page").with(httpBasic("carol", "pw"))).andExpect(status().isOk());
+
+		assertThat(userDetailsManager.loadUserByUsername("carol").getPassword()).isEqualTo("{noop}pw");
+	}
+}
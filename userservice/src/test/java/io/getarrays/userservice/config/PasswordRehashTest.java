@@ -0,0 +1,40 @@
+package io.getarrays.userservice.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// the configured cost went from 4 to 5 since bob's hash was made
+@SpringBootTest(properties = {"userservice.password-check.min-cost=5", "userservice.password-check.max-cost=5",
+		"userservice.password-check.rehash-on-login=true"})
+@AutoConfigureMockMvc
+class PasswordRehashTest {
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private InMemoryUserDetailsManager userDetailsManager;
+
+	@Test
+	void successfulLoginRehashesAtTheConfiguredCost() throws Exception {
+		userDetailsManager.createUser(User.withUsername("bob")
+				.password("{bcrypt}" + new BCryptPasswordEncoder(4).encode("pw")).roles("USER").build());
+
+		mvc.perform(get("/api/users/page").with(httpBasic("bob", "wrong"))).andExpect(status().isUnauthorized());
+		assertThat(userDetailsManager.loadUserByUsername("bob").getPassword()).startsWith("{bcrypt}$2a$04$");
+
+		mvc.perform(get("/api/users/page").with(httpBasic("bob", "pw"))).andExpect(status().isOk());
+		assertThat(userDetailsManager.loadUserByUsername("bob").getPassword()).startsWith("{bcrypt}$2a$05$");
+
+		mvc.perform(get("/api/users/page").with(httpBasic("bob", "pw"))).andExpect(status().isOk());
+	}
+}
@@ -0,0 +1,89 @@
+package io.getarrays.userservice.config;
+
+import io.getarrays.userservice.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:primary-${random.uuid};DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER",
+		"spring.datasource.replica.url=jdbc:h2:mem:replica-${random.uuid};DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER",
+		"spring.datasource.replica.check-interval=1h"
+})
+class ReadWriteRoutingTest {
+	@Autowired
+	private DataSource dataSource;
+	@Autowired
+	@Qualifier("replicaDataSource")
+	private DataSource replicaDataSource;
+	@Autowired
+	private ReplicaLagMonitor replicaLagMonitor;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	@Autowired
+	private UserService userService;
+
+	private JdbcTemplate jdbc;
+
+	@BeforeEach
+	void setUp() {
+		jdbc = new JdbcTemplate(dataSource);
+		replicaLagMonitor.check();
+	}
+
+	@AfterEach
+	void tearDown() {
+		replicaLagMonitor.update(Duration.ZERO);
+	}
+
+	@Test
+	void readOnlyTransactionsUseTheReplica() {
+		assertThat(databaseIn(true)).startsWith("REPLICA-");
+	}
+
+	@Test
+	void writeTransactionsAndPlainCallsUseThePrimary() {
+		assertThat(databaseIn(false)).startsWith("PRIMARY-");
+		assertThat(jdbc.queryForObject("select database()", String.class)).startsWith("PRIMARY-");
+	}
+
+	@Test
+	void lagBeyondTheLimitFallsBackToThePrimary() {
+		replicaLagMonitor.update(Duration.ofMinutes(1));
+		assertThat(databaseIn(true)).startsWith("PRIMARY-");
+
+		replicaLagMonitor.update(Duration.ZERO);
+		assertThat(databaseIn(true)).startsWith("REPLICA-");
+	}
+
+	@Test
+	void userServiceReadsFromTheReplica() {
+		// the replica gets the schema but not the seeded users, so where getUsers reads from shows in its result
+		JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+		List<String> schema = jdbc.queryForList("script nodata nosettings", String.class);
+		schema.stream().filter(statement -> !statement.startsWith("--")).forEach(replica::execute);
+
+		assertThat(userService.getUsers()).isEmpty();
+
+		replicaLagMonitor.update(Duration.ofMinutes(1));
+		assertThat(userService.getUsers()).isNotEmpty();
+	}
+
+	private String databaseIn(boolean readOnly) {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		transaction.setReadOnly(readOnly);
+		return transaction.execute(status -> jdbc.queryForObject("select database()", String.class));
+	}
+}
@@ -0,0 +1,148 @@
+package io.getarrays.userservice.repo;
+
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class UserRepoTest {
+	@Autowired
+	private UserRepo userRepo;
+	@Autowired
+	private RoleRepo roleRepo;
+	@Autowired
+	private EntityManager entityManager;
+
+	private SessionFactory sessionFactory;
+	private Statistics statistics;
+	// usernames are unique, so repeated seeding continues the numbering
+	private int seeded;
+
+	@BeforeEach
+	void setUp() {
+		sessionFactory = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class);
+		statistics = sessionFactory.getStatistics();
+	}
+
+	@Test
+	void findAllRunsOneQueryRegardlessOfUserCount() {
+		seed(10);
+		assertThat(queriesFor(() -> userRepo.findAll())).isEqualTo(1);
+
+		seed(40);
+		assertThat(queriesFor(() -> userRepo.findAll())).isEqualTo(1);
+	}
+
+	@Test
+	void findByUsernameFetchesRolesWithTheUser() {
+		seed(5);
+		assertThat(queriesFor(() -> List.of(userRepo.findByUsername("user3")))).isEqualTo(1);
+	}
+
+	@Test
+	void keysetPageProjectsRowsInTwoQueries() {
+		seed(50);
+		statistics.clear();
+		List<Long> ids = userRepo.findIdsAfter(0L, PageRequest.of(0, 50));
+		List<UserRoleRow> rows = userRepo.findRowsByIdIn(ids);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+		assertThat(rows.stream().map(UserRoleRow::getUserId).distinct()).containsExactlyElementsOf(ids);
+		assertThat(entityManager.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+	}
+
+	@Test
+	void streamProjectsRowsInOneQuery() {
+		seed(20);
+		statistics.clear();
+		try (Stream<UserRoleRow> rows = userRepo.streamAllRows()) {
+			assertThat(rows.filter(row -> row.getUsername().startsWith("user")).count()).isEqualTo(40);
+		}
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void searchIdsMatchesEscapedPatternsInUsernameOrder() {
+		seed(20);
+		userRepo.save(new User(null, "Under Score", "under_score", "1234", new ArrayList<>()));
+		userRepo.save(new User(null, "Under Scoreless", "underxscore", "1234", new ArrayList<>()));
+		entityManager.flush();
+
+		List<Long> prefixed = userRepo.searchIds("user1%", "% user1%", null, "ROLE_ADMIN", PageRequest.of(0, 3));
+		assertThat(userRepo.findAllById(prefixed)).extracting(User::getUsername)
+				.containsExactlyInAnyOrder("user1", "user10", "user11");
+
+		List<Long> contained = userRepo.searchIds(null, null, "%r!_s%", null, PageRequest.of(0, 10));
+		assertThat(userRepo.findAllById(contained)).extracting(User::getUsername).containsExactly("under_score");
+
+		assertThat(userRepo.searchIds("sco%", "% sco%", null, "ROLE_ADMIN", PageRequest.of(0, 10))).isEmpty();
+	}
+
+	@Test
+	void grantsAndRevokesRolesWithSetBasedStatements() {
+		seed(3);
+		Role audit = roleRepo.save(new Role(null, "ROLE_AUDIT"));
+		entityManager.flush();
+
+		assertThat(userRepo.grantRole(audit.getId(), List.of("user0", "user1", "nobody"))).isEqualTo(2);
+		assertThat(userRepo.grantRole(audit.getId(), List.of("user0", "user1"))).isZero();
+		assertThat(userRepo.grantRoleByPattern(audit.getId(), "user%")).isEqualTo(1);
+		assertThat(auditedUsers()).containsExactlyInAnyOrder("user0", "user1", "user2");
+
+		assertThat(userRepo.revokeRole(audit.getId(), List.of("user0", "nobody"))).isEqualTo(1);
+		assertThat(userRepo.revokeRoleByPattern(audit.getId(), "user%")).isEqualTo(2);
+		assertThat(userRepo.revokeRoleByPattern(audit.getId(), "user%")).isZero();
+		assertThat(auditedUsers()).isEmpty();
+		assertThat(userRepo.findByUsername("user0").getRoles()).extracting(Role::getName)
+				.containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+	}
+
+	private void seed(int count) {
+		Role user = roleRepo.save(new Role(null, "ROLE_USER"));
+		Role admin = roleRepo.save(new Role(null, "ROLE_ADMIN"));
+		for (int i = seeded; i < seeded + count; i++) {
+			List<Role> roles = new ArrayList<>(List.of(user, admin));
+			userRepo.save(new User(null, "User " + i, "user" + i, "1234", roles));
+		}
+		seeded += count;
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	private List<String> auditedUsers() {
+		List<String> usernames = new ArrayList<>();
+		for (UserRoleRow row : userRepo.findRowsByUsernameLike("user%")) {
+			if ("ROLE_AUDIT".equals(row.getRoleName())) {
+				usernames.add(row.getUsername());
+			}
+		}
+		return usernames;
+	}
+
+	// measures the fetch plan itself, so the second-level cache must not answer for it
+	private long queriesFor(Supplier<List<User>> query) {
+		sessionFactory.getCache().evictAllRegions();
+		statistics.clear();
+		List<User> users = query.get();
+		users.forEach(u -> assertThat(u.getRoles()).isNotEmpty());
+		long count = statistics.getPrepareStatementCount();
+		entityManager.clear();
+		return count;
+	}
+}
@@ -0,0 +1,46 @@
+package io.getarrays.userservice.service;
+
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+import io.getarrays.userservice.repo.ChangeCounterRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class DataVersionTest {
+	@Autowired
+	private DataVersion dataVersion;
+	@Autowired
+	private ChangeCounterRepo changeCounterRepo;
+	@Autowired
+	private UserService userService;
+
+	@Test
+	void counterExistsBeforeTheFirstWrite() {
+		assertThat(changeCounterRepo.existsById(1)).isTrue();
+	}
+
+	@Test
+	void bulkGrantBumpsTheVersionOnceAcrossChunks() {
+		userService.saveRole(new Role(null, "ROLE_BULK"));
+		userService.saveUser(new User(null, "Bulk User", "bulk-last", "1234", new ArrayList<>()));
+		// several chunks of names, the one user that exists in the last of them
+		List<String> usernames = IntStream.range(0, 2500).mapToObj(i -> "bulk-missing-" + i).collect(Collectors.toList());
+		usernames.add("bulk-last");
+		long before = dataVersion.current().getVersion();
+
+		assertThat(userService.addRoleToUsers("ROLE_BULK", usernames, null)).isEqualTo(1);
+		assertThat(dataVersion.current().getVersion()).isEqualTo(before + 1);
+
+		assertThat(userService.removeRoleFromUsers("ROLE_BULK", List.of("bulk-missing-0"), null)).isZero();
+		assertThat(dataVersion.current().getVersion()).isEqualTo(before + 1);
+	}
+}
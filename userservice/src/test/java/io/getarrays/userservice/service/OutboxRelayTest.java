@@ -0,0 +1,178 @@
+package io.getarrays.userservice.service;
+
+import io.getarrays.userservice.domain.OutboxEvent;
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+import io.getarrays.userservice.repo.OutboxEventRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {"userservice.outbox.relay.enabled=true", "userservice.outbox.relay.interval=20ms"})
+class OutboxRelayTest {
+	@Autowired
+	private UserService userService;
+	@Autowired
+	private ChangeEventOutbox outbox;
+	@Autowired
+	private RecordingSink sink;
+	@Autowired
+	private OutboxEventRepo outboxEventRepo;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	@Autowired
+	private UserSearchIndex searchIndex;
+
+	@Test
+	void relaysCommittedChangesInSequenceOrder() throws Exception {
+		userService.saveRole(new Role(null, "ROLE_AUDITOR"));
+		userService.saveUser(new User(null, "Outbox User", "outbox", "1234", new ArrayList<>()));
+		userService.addRoleToUser("outbox", "ROLE_AUDITOR");
+		assertThatThrownBy(() -> userService.saveUser(new User(null, "Again", "outbox", "1234", new ArrayList<>())))
+				.isInstanceOf(DuplicateUsernameException.class);
+
+		List<ChangeEvent> events = awaitEvents(3);
+		assertThat(events).extracting(ChangeEvent::getType).containsExactly(
+				OutboxEvent.Type.ROLE_CREATED, OutboxEvent.Type.USER_CREATED, OutboxEvent.Type.USER_UPDATED);
+		assertThat(events.get(1).getSequence()).isGreaterThan(events.get(0).getSequence());
+		assertThat(events.get(2).getSequence()).isGreaterThan(events.get(1).getSequence());
+		assertThat(events.get(2).getPayload()).contains("\"username\":\"outbox\"", "ROLE_AUDITOR").doesNotContain("1234");
+
+		List<ChangeEvent> resumed = outbox.findAfter(events.get(0).getSequence(), 100);
+		assertThat(resumed).extracting(ChangeEvent::getSequence).startsWith(events.get(1).getSequence(), events.get(2).getSequence());
+	}
+
+	@Test
+	void relaysOnSeveralInstancesNumberEachEventOnceAndAllDeliverIt() throws Exception {
+		// two more relays as if on other instances, racing the one in the context; a round that fails throws
+		RecordingSink first = new RecordingSink();
+		RecordingSink second = new RecordingSink();
+		OutboxRelay one = new OutboxRelay(outboxEventRepo, List.of(first), transactionManager, 5, Duration.ofMillis(20), Duration.ofDays(7));
+		OutboxRelay other = new OutboxRelay(outboxEventRepo, List.of(second), transactionManager, 5, Duration.ofMillis(20), Duration.ofDays(7));
+		AtomicBoolean saving = new AtomicBoolean(true);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<Void>> rounds = List.of(pool.submit(() -> pump(one, saving)), pool.submit(() -> pump(other, saving)));
+			for (int i = 0; i < 40; i++) {
+				userService.saveUser(new User(null, "Relay User", "relay-" + i, "1234", new ArrayList<>()));
+			}
+			saving.set(false);
+			for (Future<Void> round : rounds) {
+				round.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		one.run();
+		other.run();
+
+		List<Long> sequences = first.events.stream().map(ChangeEvent::getSequence).collect(Collectors.toList());
+		assertThat(sequences).isSorted().doesNotHaveDuplicates();
+		assertThat(second.events).extracting(ChangeEvent::getSequence).containsExactlyElementsOf(sequences);
+		assertThat(first.events).filteredOn(e -> e.getSubject().startsWith("relay-")).hasSize(40);
+	}
+
+	@Test
+	void searchIndexFollowsChangesWrittenThroughAnotherInstance() throws Exception {
+		for (int i = 0; i < 250 && !searchIndex.isReady(); i++) {
+			Thread.sleep(20);
+		}
+		assertThat(searchIndex.isReady()).isTrue();
+
+		// only the outbox row, as another instance's transaction leaves it for this one to see
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> outboxEventRepo.save(new OutboxEvent(
+				null, null, OutboxEvent.Type.USER_CREATED, "elsewhere",
+				"{\"id\":9001,\"name\":\"Made Elsewhere\",\"username\":\"elsewhere\",\"roles\":[]}", Instant.now())));
+
+		for (int i = 0; i < 250 && userService.searchUsers("elsewhere", null, null, 10).isEmpty(); i++) {
+			Thread.sleep(20);
+		}
+		assertThat(userService.searchUsers("made", null, null, 10)).extracting(UserView::getUsername).containsExactly("elsewhere");
+	}
+
+	@Test
+	void stopLetsTheRoundInProgressFinish() throws Exception {
+		CountDownLatch publishing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean interrupted = new AtomicBoolean();
+		OutboxRelay relay = new OutboxRelay(outboxEventRepo, List.of(batch -> {
+			publishing.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				interrupted.set(true);
+			}
+		}), transactionManager, 500, Duration.ofMillis(20), Duration.ofDays(7));
+		relay.start();
+		userService.saveUser(new User(null, "Stop User", "stopping", "1234", new ArrayList<>()));
+		assertThat(publishing.await(5, TimeUnit.SECONDS)).isTrue();
+
+		CompletableFuture<Void> stopped = CompletableFuture.runAsync(relay::stop);
+		Thread.sleep(100);
+		assertThat(stopped).isNotDone();
+
+		release.countDown();
+		stopped.get(5, TimeUnit.SECONDS);
+		assertThat(interrupted).isFalse();
+		assertThat(relay.isRunning()).isFalse();
+	}
+
+	private static Void pump(OutboxRelay relay, AtomicBoolean saving) throws InterruptedException {
+		while (saving.get()) {
+			relay.run();
+			Thread.sleep(2);
+		}
+		return null;
+	}
+
+	private List<ChangeEvent> awaitEvents(int count) throws InterruptedException {
+		for (int i = 0; i < 250; i++) {
+			List<ChangeEvent> ours = sink.events.stream()
+					.filter(e -> e.getSubject().equals("outbox") || e.getSubject().equals("ROLE_AUDITOR"))
+					.collect(Collectors.toList());
+			if (ours.size() >= count) {
+				return ours;
+			}
+			Thread.sleep(20);
+		}
+		throw new AssertionError("events were not relayed: " + sink.events);
+	}
+
+	static class RecordingSink implements ChangeEventSink {
+		private final List<ChangeEvent> events = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void publish(List<ChangeEvent> batch) {
+			events.addAll(batch);
+		}
+	}
+
+	@TestConfiguration
+	static class Config {
+		@Bean
+		RecordingSink recordingSink() {
+			return new RecordingSink();
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package io.getarrays.userservice.service;
+
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+import io.getarrays.userservice.repo.RoleRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class RoleRegistryTest {
+	@Autowired
+	private RoleRegistry roleRegistry;
+	@Autowired
+	private RoleRepo roleRepo;
+	@Autowired
+	private UserService userService;
+
+	@Test
+	void findsARoleCreatedBehindItsBackAndKeepsIt() {
+		// as if another instance had created it: straight into the table, the registry is not told
+		Role stored = roleRepo.save(new Role(null, "ROLE_ELSEWHERE"));
+		userService.saveUser(new User(null, "Registry User", "registry", "1234", new ArrayList<>()));
+
+		userService.addRoleToUser("registry", "ROLE_ELSEWHERE");
+
+		assertThat(userService.getUserView("registry").getRoles()).containsExactly("ROLE_ELSEWHERE");
+		assertThat(roleRegistry.getRoles()).extracting(Role::getId).contains(stored.getId());
+	}
+
+	@Test
+	void rejectsARoleThatDoesNotExist() {
+		userService.saveUser(new User(null, "Registry User", "registry-none", "1234", new ArrayList<>()));
+
+		assertThatThrownBy(() -> userService.addRoleToUser("registry-none", "ROLE_MISSING"))
+				.isInstanceOf(UnknownRoleException.class);
+		assertThatThrownBy(() -> userService.addRoleToUsers("ROLE_MISSING", List.of("registry-none"), null))
+				.isInstanceOf(UnknownRoleException.class);
+		assertThat(userService.getUserView("registry-none").getRoles()).isEmpty();
+	}
+}
@@ -0,0 +1,98 @@
+package io.getarrays.userservice.service;
+
+import io.getarrays.userservice.domain.Role;
+import io.getarrays.userservice.domain.User;
+import io.getarrays.userservice.repo.UserRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.mockito.stubbing.Answer;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class UserImportTest {
+	@Autowired
+	private UserService userService;
+	@SpyBean
+	private UserRepo userRepo;
+
+	@Test
+	void signupRacingTheExistenceCheckIsReportedAsADuplicate() {
+		userService.saveUser(new User(null, "Raced", "raced", "1234", new ArrayList<>()));
+		// the first check misses the signup, as if it had committed right after the check
+		doReturn(List.of()).doAnswer(real()).when(userRepo).findExistingUsernames(any());
+
+		BulkImportResult result = userService.importUsers(List.of(
+				new User(null, "Fresh", "fresh", "1234", new ArrayList<>()),
+				new User(null, "Raced Again", "raced", "1234", new ArrayList<>())));
+
+		assertThat(result.getCreated()).isEqualTo(1);
+		assertThat(result.getRows()).extracting(BulkImportResult.Row::getStatus)
+				.containsExactly(BulkImportResult.Status.CREATED, BulkImportResult.Status.DUPLICATE);
+		assertThat(userService.getUserView("fresh")).isNotNull();
+		assertThat(userService.getUserView("raced").getName()).isEqualTo("Raced");
+	}
+
+	@Test
+	void rowRejectedForItsRolesLeavesTheUsernameToALaterRow() {
+		Role unknown = new Role(null, "ROLE_NOT_THERE");
+		BulkImportResult result = userService.importUsers(List.of(
+				new User(null, "Bad Role", "second-try", "1234", new ArrayList<>(List.of(unknown))),
+				new User(null, "Second Try", "second-try", "1234", new ArrayList<>()),
+				new User(null, "Third Try", "second-try", "1234", new ArrayList<>())));
+
+		assertThat(result.getRows()).extracting(BulkImportResult.Row::getStatus).containsExactly(
+				BulkImportResult.Status.INVALID, BulkImportResult.Status.CREATED, BulkImportResult.Status.DUPLICATE);
+		assertThat(userService.getUserView("second-try").getName()).isEqualTo("Second Try");
+	}
+
+	@Test
+	void otherViolationsRejectTheChunkWithoutRetrying() {
+		clearInvocations(userRepo);
+		BulkImportResult result = userService.importUsers(List.of(
+				new User(null, "Fine", "fine-row", "1234", new ArrayList<>()),
+				new User(null, "x".repeat(300), "long-row", "1234", new ArrayList<>())));
+
+		assertThat(result.getRows()).extracting(BulkImportResult.Row::getStatus)
+				.containsExactly(BulkImportResult.Status.INVALID, BulkImportResult.Status.INVALID);
+		assertThat(result.getRows()).extracting(BulkImportResult.Row::getReason).containsOnly("rejected by the database");
+		verify(userRepo, times(1)).findExistingUsernames(any());
+		assertThat(userService.getUserView("fine-row")).isNull();
+	}
+
+	@Test
+	void earlierChunksStayCommittedWhenALaterOneFails() {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 600; i++) {
+			users.add(new User(null, "Chunk " + i, "chunk" + i, "1234", new ArrayList<>()));
+		}
+		userService.saveUser(new User(null, "Taken", "chunk550", "1234", new ArrayList<>()));
+		// the second chunk never sees the taken username, so every attempt at it fails on the unique index
+		doAnswer(real()).doReturn(List.of()).when(userRepo).findExistingUsernames(any());
+
+		BulkImportResult result = userService.importUsers(users);
+
+		assertThat(result.getCreated()).isEqualTo(500);
+		assertThat(result.getRejected()).isEqualTo(100);
+		assertThat(result.getRows()).hasSize(600);
+		assertThat(userService.getUserView("chunk499")).isNotNull();
+		assertThat(userService.getUserView("chunk500")).isNull();
+	}
+
+	// the spy wraps the repository proxy, whose methods only the spy's default answer knows how to reach
+	private Answer<?> real() {
+		return mockingDetails(userRepo).getMockCreationSettings().getDefaultAnswer();
+	}
+}
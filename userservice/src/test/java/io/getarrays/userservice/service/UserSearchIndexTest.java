@@ -0,0 +1,106 @@
+package io.getarrays.userservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import io.getarrays.userservice.domain.OutboxEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserSearchIndexTest {
+	// as Boot configures it, which reads UserView through its constructor
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new ParameterNamesModule());
+	private UserSearchIndex index;
+
+	@BeforeEach
+	void setUp() {
+		index = new UserSearchIndex(objectMapper);
+		index.load(List.of(
+				new UserView(1L, "John Travolta", "john", List.of("ROLE_ADMIN", "ROLE_USER")),
+				new UserView(2L, "Will Smith", "will", List.of("ROLE_MANAGER")),
+				new UserView(3L, "Jim Carry", "jim", List.of("ROLE_USER")),
+				new UserView(4L, "Arnold Schwarzenegger", "arnold", List.of("ROLE_ADMIN"))));
+	}
+
+	@Test
+	void prefixMatchesUsernameOrAnyWordOfTheName() {
+		assertThat(usernames(index.search("J", null, null, 10))).containsExactly("jim", "john");
+		assertThat(usernames(index.search("smi", null, null, 10))).containsExactly("will");
+	}
+
+	@Test
+	void containsMatchesUsernameOrName() {
+		assertThat(usernames(index.search(null, "ARR", null, 10))).containsExactly("jim");
+		assertThat(usernames(index.search(null, "ol", null, 10))).containsExactly("arnold", "john");
+		assertThat(usernames(index.search(null, "xyz", null, 10))).isEmpty();
+	}
+
+	@Test
+	void filtersByRoleAndKeepsTheFirstUsernames() {
+		assertThat(usernames(index.search(null, null, "ROLE_USER", 10))).containsExactly("jim", "john");
+		assertThat(usernames(index.search(null, null, null, 2))).containsExactly("arnold", "jim");
+		assertThat(usernames(index.search("j", "tra", "ROLE_ADMIN", 10))).containsExactly("john");
+	}
+
+	@Test
+	void changeEventReplacesTheOldTerms() throws Exception {
+		index.publish(List.of(event(1, new UserView(2L, "Will Turner", "will", List.of("ROLE_USER")))));
+
+		assertThat(index.search("smith", null, null, 10)).isEmpty();
+		assertThat(usernames(index.search("turn", null, "ROLE_USER", 10))).containsExactly("will");
+		assertThat(index.size()).isEqualTo(4);
+	}
+
+	@Test
+	void redeliveredEventsAreSkipped() throws Exception {
+		index.publish(List.of(event(1, new UserView(5L, "Keanu Reeves", "keanu", List.of()))));
+		index.publish(List.of(event(2, new UserView(5L, "Keanu Neo", "keanu", List.of()))));
+		// offered again after a sink further down the list failed
+		index.publish(List.of(event(1, new UserView(5L, "Keanu Reeves", "keanu", List.of())),
+				event(2, new UserView(5L, "Keanu Neo", "keanu", List.of()))));
+
+		assertThat(index.search("reeves", null, null, 10)).isEmpty();
+		assertThat(usernames(index.search("neo", null, null, 10))).containsExactly("keanu");
+	}
+
+	@Test
+	void loadKeepsUsersChangedInTheMeantime() throws Exception {
+		UserSearchIndex fresh = new UserSearchIndex(objectMapper);
+		fresh.publish(List.of(event(1, new UserView(1L, "John Newer", "john", List.of()))));
+		fresh.load(List.of(new UserView(1L, "John Travolta", "john", List.of())));
+
+		assertThat(fresh.isReady()).isTrue();
+		assertThat(fresh.search("newer", null, null, 10)).hasSize(1);
+		assertThat(fresh.search("travolta", null, null, 10)).isEmpty();
+	}
+
+	@Test
+	void stopsCollectingAtTheLimit() {
+		List<UserView> many = new ArrayList<>();
+		for (long id = 100; id < 1100; id++) {
+			many.add(new UserView(id, "Bulk User", "bulk" + id, List.of()));
+		}
+		index.load(many);
+
+		assertThat(usernames(index.search("b", null, null, 3))).hasSize(3).allMatch(username -> username.startsWith("bulk"));
+		assertThat(usernames(index.search(null, null, null, 3))).containsExactly("arnold", "bulk100", "bulk1000");
+		assertThat(usernames(index.search(null, "bu", null, 2))).containsExactly("bulk100", "bulk1000");
+		assertThat(index.search(null, "ulk", null, 5)).hasSize(5);
+	}
+
+	private ChangeEvent event(long sequence, UserView user) throws JsonProcessingException {
+		return new ChangeEvent(sequence, OutboxEvent.Type.USER_UPDATED, user.getUsername(),
+				objectMapper.writeValueAsString(user), Instant.now());
+	}
+
+	private static List<String> usernames(List<UserView> views) {
+		return views.stream().map(UserView::getUsername).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,44 @@
+package io.getarrays.userservice.service;
+
+import io.getarrays.userservice.domain.User;
+import io.getarrays.userservice.repo.UserRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+
+@SpringBootTest
+class UserSignupTest {
+	@Autowired
+	private UserService userService;
+	@SpyBean
+	private UserRepo userRepo;
+
+	@Test
+	void signupRacingPastTheCheckFailsOnTheUsernameIndexAsADuplicate() {
+		userService.saveUser(new User(null, "First", "racer", "1234", new ArrayList<>()));
+		doReturn(List.of()).when(userRepo).findExistingUsernames(any());
+
+		assertThatThrownBy(() -> userService.saveUser(new User(null, "Second", "racer", "1234", new ArrayList<>())))
+				.isInstanceOf(DuplicateUsernameException.class);
+		assertThat(userService.getUserView("racer").getName()).isEqualTo("First");
+	}
+
+	@Test
+	void otherViolationsAreNotReportedAsDuplicates() {
+		String tooLong = "x".repeat(300);
+
+		assertThatThrownBy(() -> userService.saveUser(new User(null, tooLong, "long-name", "1234", new ArrayList<>())))
+				.isInstanceOf(DataIntegrityViolationException.class);
+		assertThat(userService.getUserView("long-name")).isNull();
+	}
+}